@@ -0,0 +1,162 @@
+package kuxhausen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import kuxhausen.Token.TokType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Eric Kuxhausen JMH benchmarks of the lexer, both parsers and the output writers over
+ *         every input/*.pas file plus CorpusGenerator programs of increasing size. Sources are read
+ *         into memory up front so disk reads aren't counted, and the writer benchmarks write tokens
+ *         parsed once in setup. Build with mvn -Pjmh package and run java -jar
+ *         target/benchmarks.jar from the project directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+// the parsers recurse once per procedure and statement, so big programs need a deep stack
+@Fork(value = 1, jvmArgsAppend = "-Xss256m")
+public class Benchmarks {
+
+  /**
+   * an input/ file name, or generated followed by the size in KB of a CorpusGenerator program
+   */
+  @Param({"allLexErrors.pas", "allLexValid.pas", "cor3.pas", "parseTest1.pas", "parseTest2.pas",
+      "semanticTest1.pas", "semanticTest2.pas", "strings.pas", "generated32", "generated256",
+      "generated2048"})
+  String input;
+
+  private byte[] source;
+
+  /**
+   * tokens and source lines of input as parsed once by Parser, for the writer benchmarks
+   */
+  private ArrayList<Token> parsed;
+  private SourceBuffer parsedSource;
+
+  private File listing;
+  private File tokens;
+  private File loc;
+
+  private PrintStream console;
+
+  @Setup
+  public void setUp() throws IOException {
+    if (input.startsWith("generated"))
+      source =
+          CorpusGenerator.program(Long.parseLong(input.substring("generated".length())) * 1024, 1)
+              .getBytes("US-ASCII");
+    else
+      source = Files.readAllBytes(new File("input", input).toPath());
+
+    // every Lexar announces the reserved word table, keep that out of the results
+    console = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      public void write(int b) {}
+
+      public void write(byte[] b, int off, int len) {}
+    }));
+
+    Lexar l = new Lexar(ByteBuffer.wrap(source));
+    parsed = new Parser(l).getTokenList();
+    parsedSource = l.getSourceBuffer();
+
+    listing = File.createTempFile("bench", ".listing");
+    tokens = File.createTempFile("bench", ".token");
+    loc = File.createTempFile("bench", ".loc");
+  }
+
+  @TearDown
+  public void tearDown() {
+    System.setOut(console);
+    listing.delete();
+    tokens.delete();
+    loc.delete();
+  }
+
+  @Benchmark
+  public int lex() {
+    Lexar l = new Lexar(ByteBuffer.wrap(source));
+    int count = 0;
+    while (l.getNextToken().type != TokType.$)
+      count++;
+    return count;
+  }
+
+  @Benchmark
+  public int blockLex() {
+    Lexar l = new Lexar(ByteBuffer.wrap(source));
+    Token[] block = new Token[Lexar.BLOCK_SIZE];
+    int count = 0;
+    for (int n = 0; n == 0 || block[n - 1].type != TokType.$; count += n)
+      n = l.getNextTokens(block, 0, block.length);
+    return count - 1;
+  }
+
+  @Benchmark
+  public int parallelLex() {
+    Lexar l = new Lexar(ByteBuffer.wrap(source));
+    l.lexInParallel();
+    int count = 0;
+    while (l.getNextToken().type != TokType.$)
+      count++;
+    return count;
+  }
+
+  @Benchmark
+  public int parse() {
+    return new Parser(new Lexar(ByteBuffer.wrap(source))).getTokenList().size();
+  }
+
+  @Benchmark
+  public int pipelinedParse() {
+    Lexar l = new Lexar(ByteBuffer.wrap(source));
+    l.pipeline();
+    return new Parser(l).getTokenList().size();
+  }
+
+  @Benchmark
+  public int tableParse() {
+    return new TableParser(new Lexar(ByteBuffer.wrap(source))).getTokenList().size();
+  }
+
+  @Benchmark
+  public int decoratedParse() {
+    return new DecoratedParser(new Lexar(ByteBuffer.wrap(source)), loc.getPath()).getTokenList()
+        .size();
+  }
+
+  @Benchmark
+  public long writeListingFile() {
+    Utils.writeListingFile(listing.getPath(), parsed, parsedSource);
+    return listing.length();
+  }
+
+  @Benchmark
+  public long writeTokenFile() {
+    Utils.writeTokenFile(tokens.getPath(), parsed);
+    return tokens.length();
+  }
+}
@@ -0,0 +1,184 @@
+package kuxhausen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * @author Eric Kuxhausen Runs a driver's per file work over all of its arguments. Files share
+ *         nothing but read only lexer configuration, so when kuxhausen.parallel is set they are
+ *         compiled concurrently on a work stealing pool sized to the machine. Console output is
+ *         captured per file and printed in argument order, so it reads the same as a sequential
+ *         run.
+ */
+public class Batch {
+
+  /**
+   * Compile the files given on the command line concurrently
+   */
+  public static final boolean PARALLEL = Boolean.getBoolean("kuxhausen.parallel");
+
+  public interface Job {
+    void compile(String filename);
+  }
+
+  public static void run(String[] filenames, Job job) {
+    if (!PARALLEL || filenames.length < 2) {
+      for (String filename : filenames)
+        job.compile(filename);
+      return;
+    }
+
+    PrintStream console = System.out;
+    ForkJoinPool pool = new ForkJoinPool();
+    routeConsole();
+    try {
+      ArrayList<ForkJoinTask<byte[]>> results = new ArrayList<ForkJoinTask<byte[]>>();
+      for (String filename : filenames)
+        results.add(pool.submit(new Compile(job, filename)));
+
+      // print each file's output as soon as every file before it is done
+      for (ForkJoinTask<byte[]> result : results) {
+        byte[] printed = result.get();
+        console.write(printed, 0, printed.length);
+      }
+      console.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new RuntimeException(cause);
+    } finally {
+      restoreConsole();
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * how System.out encodes, routed or not, so captured output can be decoded the same way and
+   * replays byte for byte as the sequential run printed it
+   */
+  static final Charset CONSOLE_CHARSET = Charset.defaultCharset();
+
+  /**
+   * the real System.out while it's routed through a CapturingStream, otherwise null
+   */
+  private static PrintStream routedConsole;
+
+  /**
+   * Points System.out at a stream that sends each capturing thread's output to its capture and
+   * everything else to the console, until restoreConsole()
+   */
+  static synchronized void routeConsole() {
+    if (routedConsole == null) {
+      routedConsole = System.out;
+      try {
+        System.setOut(new PrintStream(new CapturingStream(routedConsole), true,
+            CONSOLE_CHARSET.name()));
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  static synchronized void restoreConsole() {
+    if (routedConsole != null) {
+      System.setOut(routedConsole);
+      routedConsole = null;
+    }
+  }
+
+  private static synchronized boolean isRouted() {
+    return routedConsole != null;
+  }
+
+  /**
+   * console output written while compiling a file, null on threads not compiling one
+   */
+  private static final ThreadLocal<ByteArrayOutputStream> CAPTURED =
+      new ThreadLocal<ByteArrayOutputStream>();
+
+  /**
+   * Runs job on filename and returns what it printed instead of letting it reach the console. Nests
+   * inside another capture, and routes the console for just this call if nothing else has.
+   */
+  static byte[] capture(Job job, String filename) {
+    boolean route = !isRouted();
+    if (route)
+      routeConsole();
+    ByteArrayOutputStream outer = CAPTURED.get();
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    CAPTURED.set(printed);
+    try {
+      job.compile(filename);
+      System.out.flush();
+    } finally {
+      if (outer != null)
+        CAPTURED.set(outer);
+      else
+        CAPTURED.remove();
+      if (route)
+        restoreConsole();
+    }
+    return printed.toByteArray();
+  }
+
+  private static class Compile implements Callable<byte[]> {
+    private Job job;
+    private String filename;
+
+    Compile(Job job, String filename) {
+      this.job = job;
+      this.filename = filename;
+    }
+
+    @Override
+    public byte[] call() {
+      return capture(job, filename);
+    }
+  }
+
+  /**
+   * stands in for System.out, sending each thread's writes to its file's capture
+   */
+  private static class CapturingStream extends OutputStream {
+    private PrintStream console;
+
+    CapturingStream(PrintStream console) {
+      this.console = console;
+    }
+
+    private OutputStream target() {
+      ByteArrayOutputStream captured = CAPTURED.get();
+      return (captured != null) ? captured : console;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      target().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      target().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (CAPTURED.get() == null)
+        console.flush();
+    }
+  }
+}
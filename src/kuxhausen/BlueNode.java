@@ -2,17 +2,17 @@ package kuxhausen;
 
 public class BlueNode implements Node {
 
-  private String mName;
+  private int mSymbol;
   private PasType mType;
 
   @Override
-  public String getName() {
-    return mName;
+  public int getSymbol() {
+    return mSymbol;
   }
 
   @Override
-  public void setName(String name) {
-    mName = name;
+  public void setSymbol(int symbol) {
+    mSymbol = symbol;
   }
 
   public PasType getType() {
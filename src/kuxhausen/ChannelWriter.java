@@ -0,0 +1,163 @@
+package kuxhausen;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * @author Eric Kuxhausen Writer for the listing and token files. Text is encoded into one large
+ *         buffer that is reused for the life of the file and drained to a FileChannel whenever it
+ *         fills. Fixed width columns are padded in place instead of through String.format. ASCII is
+ *         copied straight across and anything else goes through the platform charset, so files
+ *         match what a PrintWriter would have written byte for byte. Like a PrintWriter, write
+ *         errors are swallowed and reported by checkError().
+ */
+public class ChannelWriter extends Writer {
+
+  private static final int CAPACITY = 1 << 16;
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+  private static final Charset CHARSET = Charset.defaultCharset();
+
+  private FileChannel channel;
+  private byte[] bytes = new byte[CAPACITY];
+  private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+  private int count;
+  private boolean trouble;
+
+  public ChannelWriter(String filename) throws FileNotFoundException {
+    channel = new FileOutputStream(filename).getChannel();
+  }
+
+  /**
+   * @return null if the file can't be created, as with the PrintWriters this replaces
+   */
+  public static ChannelWriter open(String filename) {
+    try {
+      return new ChannelWriter(filename);
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+
+  private void drain() {
+    buffer.clear().limit(count);
+    try {
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    } catch (IOException e) {
+      trouble = true;
+    }
+    count = 0;
+  }
+
+  private void put(byte b) {
+    if (count == CAPACITY)
+      drain();
+    bytes[count++] = b;
+  }
+
+  private void encode(String s) {
+    for (byte b : s.getBytes(CHARSET))
+      put(b);
+  }
+
+  @Override
+  public void write(char[] chars, int off, int len) {
+    int end = off + len;
+    for (int i = off; i < end; i++) {
+      char c = chars[i];
+      if (c >= 0x80) {
+        encode(new String(chars, i, end - i));
+        return;
+      }
+      put((byte) c);
+    }
+  }
+
+  public void print(String s) {
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        encode(s.substring(i));
+        return;
+      }
+      put((byte) c);
+    }
+  }
+
+  public void print(int n) {
+    if (n < 0) {
+      if (n == Integer.MIN_VALUE) {
+        print(Integer.toString(n));
+        return;
+      }
+      put((byte) '-');
+      n = -n;
+    }
+    if (n >= 10)
+      print(n / 10);
+    put((byte) ('0' + n % 10));
+  }
+
+  public void println() {
+    print(LINE_SEPARATOR);
+  }
+
+  private void spaces(int n) {
+    for (int i = 0; i < n; i++)
+      put((byte) ' ');
+  }
+
+  /**
+   * same as printing String.format("%-" + width + "s", s)
+   */
+  public void pad(String s, int width) {
+    if (s == null)
+      s = "null";
+    print(s);
+    spaces(width - s.length());
+  }
+
+  /**
+   * same as printing String.format("%-" + width + "s", n)
+   */
+  public void pad(int n, int width) {
+    print(n);
+    spaces(width - length(n));
+  }
+
+  private static int length(int n) {
+    if (n < 0)
+      return Integer.toString(n).length();
+    int length = 1;
+    while (n >= 10) {
+      n /= 10;
+      length++;
+    }
+    return length;
+  }
+
+  @Override
+  public void flush() {
+    drain();
+  }
+
+  @Override
+  public void close() {
+    drain();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      trouble = true;
+    }
+  }
+
+  public boolean checkError() {
+    return trouble;
+  }
+}
@@ -0,0 +1,321 @@
+package kuxhausen;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * @author Eric Kuxhausen On disk cache of a driver's results, keyed by a SHA-256 of the driver,
+ *         the compiler's own class files, the reserved word table and the source. A hit copies the
+ *         stored .listing, .token and .loc files into output/ and replays what the compile printed,
+ *         without opening a Lexar. Entries are directories named by their key. Their modification
+ *         time is bumped on every hit, and once the cache outgrows its limit the least recently
+ *         used entries are deleted.
+ */
+public class CompileCache {
+
+  /**
+   * when set (-Dkuxhausen.cache=dir) the drivers keep their results in the given directory and
+   * skip compiling files whose inputs haven't changed
+   */
+  public static final String DIRECTORY = System.getProperty("kuxhausen.cache");
+
+  /**
+   * bytes the cache may hold before evicting (-Dkuxhausen.cacheSize=n), 64MB by default
+   */
+  public static final long MAX_SIZE = Long.getLong("kuxhausen.cacheSize", 64L << 20);
+
+  private static final String PRINTED = "printed";
+
+  /**
+   * prefix of the scratch directories entries are built in. Keys are hex, so never start with it.
+   */
+  private static final String SCRATCH = "new";
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static byte[] codeDigest;
+
+  /**
+   * @return job unchanged if the cache is off, otherwise a job that checks the cache first
+   */
+  public static Batch.Job wrap(String driver, Batch.Job job, String... outputs) {
+    if (DIRECTORY == null)
+      return job;
+    return new Cached(new CompileCache(new File(DIRECTORY), MAX_SIZE), driver, job, outputs);
+  }
+
+  private static class Cached implements Batch.Job {
+    private CompileCache cache;
+    private String driver;
+    private Batch.Job job;
+    private String[] outputs;
+
+    Cached(CompileCache cache, String driver, Batch.Job job, String[] outputs) {
+      this.cache = cache;
+      this.driver = driver;
+      this.job = job;
+      this.outputs = outputs;
+    }
+
+    public void compile(String filename) {
+      String key = cache.key(driver, "input/" + filename + ".pas");
+      if (key == null) {
+        // no source, let the driver report it
+        job.compile(filename);
+        return;
+      }
+      if (cache.restore(key, "output/" + filename, outputs))
+        return;
+
+      byte[] printed = Batch.capture(job, filename);
+      System.out.write(printed, 0, printed.length);
+      System.out.flush();
+      cache.store(key, "output/" + filename, outputs, printed);
+    }
+  }
+
+  private File directory;
+  private long maxSize;
+
+  /**
+   * bytes in the cache as of the last listing plus whatever was stored here since, -1 until the
+   * first store lists it
+   */
+  private long total = -1;
+
+  public CompileCache(File directory, long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return the key for compiling source with the given driver, or null if it can't be read
+   */
+  public String key(String driver, String source) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(driver.getBytes("UTF-8"));
+      digest.update(codeDigest());
+      update(digest, Files.readAllBytes(new File(ReservedWords.PATH).toPath()));
+      update(digest, Files.readAllBytes(new File(source).toPath()));
+      return hex(digest.digest());
+    } catch (IOException e) {
+      return null;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * adds bytes preceded by their length, so adjacent inputs can't run into each other
+   */
+  private static void update(MessageDigest digest, byte[] bytes) {
+    int n = bytes.length;
+    digest.update(new byte[] {(byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n});
+    digest.update(bytes);
+  }
+
+  private static String hex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * digest of the class files this is running from, so a rebuilt compiler never sees results from
+   * an older one
+   */
+  private static synchronized byte[] codeDigest() throws IOException {
+    if (codeDigest != null)
+      return codeDigest;
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      File code =
+          new File(CompileCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+      ArrayList<File> files = new ArrayList<File>();
+      if (code.isDirectory())
+        listFiles(new File(code, "kuxhausen"), files);
+      else
+        files.add(code);
+      for (File f : files) {
+        digest.update(f.getName().getBytes("UTF-8"));
+        update(digest, Files.readAllBytes(f.toPath()));
+      }
+      codeDigest = digest.digest();
+      return codeDigest;
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * adds every file under dir in name order
+   */
+  private static void listFiles(File dir, ArrayList<File> files) {
+    File[] children = dir.listFiles();
+    if (children == null)
+      return;
+    Arrays.sort(children);
+    for (File f : children) {
+      if (f.isDirectory())
+        listFiles(f, files);
+      else
+        files.add(f);
+    }
+  }
+
+  /**
+   * Copies a stored entry's outputs to base plus each extension and prints what was printed when
+   * it was compiled
+   *
+   * @return false on a miss, including an entry missing any of its outputs
+   */
+  public boolean restore(String key, String base, String[] outputs) {
+    File entry = new File(directory, key);
+    File printed = new File(entry, PRINTED);
+    if (!printed.isFile())
+      return false;
+    // a compile writes every output, so a missing one means the entry is being evicted
+    for (String extension : outputs)
+      if (!new File(entry, extension).isFile())
+        return false;
+    try {
+      byte[] console = Files.readAllBytes(printed.toPath());
+      for (String extension : outputs)
+        Files.copy(new File(entry, extension).toPath(), new File(base + extension).toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+      entry.setLastModified(System.currentTimeMillis());
+      Metrics.cacheHit();
+      System.out.write(console, 0, console.length);
+      System.out.flush();
+      return true;
+    } catch (IOException e) {
+      // evicted while being read, compile it again
+      return false;
+    }
+  }
+
+  /**
+   * Saves the outputs at base plus each extension, along with what was printed, under key. The
+   * entry is built in a scratch directory and renamed into place so readers never see half of
+   * one. Failing to store only means the next run misses.
+   */
+  public void store(String key, String base, String[] outputs, byte[] printed) {
+    File entry = new File(directory, key);
+    if (entry.exists())
+      return;
+    directory.mkdirs();
+    File scratch = null;
+    try {
+      scratch = Files.createTempDirectory(directory.toPath(), SCRATCH).toFile();
+      for (String extension : outputs) {
+        File output = new File(base + extension);
+        if (output.isFile())
+          Files.copy(output.toPath(), new File(scratch, extension).toPath());
+      }
+      Files.write(new File(scratch, PRINTED).toPath(), printed);
+      if (scratch.renameTo(entry)) {
+        scratch = null;
+        stored(size(entry));
+      }
+    } catch (IOException e) {
+      // leave it uncached
+    } finally {
+      if (scratch != null)
+        delete(scratch);
+    }
+  }
+
+  /**
+   * adds a new entry's bytes to the running total, only listing the cache the first time and once
+   * it outgrows maxSize
+   */
+  private synchronized void stored(long bytes) {
+    if (total < 0)
+      total = size(entries()); // already counts the new entry
+    else
+      total += bytes;
+    if (total > maxSize)
+      evict();
+  }
+
+  /**
+   * every entry in the cache, leaving out scratch directories that stores are still filling
+   */
+  private File[] entries() {
+    File[] entries = directory.listFiles(new FileFilter() {
+      public boolean accept(File f) {
+        return !f.getName().startsWith(SCRATCH);
+      }
+    });
+    return (entries != null) ? entries : new File[0];
+  }
+
+  private static long size(File[] entries) {
+    long size = 0;
+    for (File entry : entries)
+      size += size(entry);
+    return size;
+  }
+
+  /**
+   * Deletes least recently used entries until the cache is down to three quarters of maxSize, so a
+   * full cache isn't listed again on every store. Recounts from a fresh listing, so entries other
+   * processes stored or evicted are taken into account.
+   */
+  private void evict() {
+    File[] entries = entries();
+    final long[] used = new long[entries.length];
+    total = size(entries);
+    if (total <= maxSize)
+      return;
+
+    for (int i = 0; i < entries.length; i++)
+      used[i] = entries[i].lastModified();
+    Integer[] order = new Integer[entries.length];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Long.compare(used[a], used[b]);
+      }
+    });
+    for (int i = 0; i < order.length && total > maxSize / 4 * 3; i++) {
+      File oldest = entries[order[i]];
+      total -= size(oldest);
+      delete(oldest);
+    }
+  }
+
+  private static long size(File entry) {
+    File[] files = entry.listFiles();
+    if (files == null)
+      return entry.length();
+    long size = 0;
+    for (File f : files)
+      size += f.length();
+    return size;
+  }
+
+  private static void delete(File entry) {
+    File[] files = entry.listFiles();
+    if (files != null)
+      for (File f : files)
+        f.delete();
+    entry.delete();
+  }
+}
@@ -0,0 +1,362 @@
+package kuxhausen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Eric Kuxhausen Keeps one compiler JVM running so repeated compiles skip startup, class
+ *         loading, reserved word loading and JIT warmup. Listens on the loopback interface and
+ *         handles each connection on its own thread, while compiles run on a pool of deep stack
+ *         workers. A connection sends one request per line and gets a response back for each:
+ *
+ *         <pre>
+ * driver timeoutMillis file sourcePath outputBase
+ * driver timeoutMillis text byteCount outputBase
+ * metrics
+ * </pre>
+ *
+ *         where driver is Project1, Project2 or Project34, a timeout of 0 means none, and text is
+ *         followed by byteCount bytes of source. The response lists each output written, each
+ *         diagnostic as its line number and listing message, and what the compile printed, ending
+ *         with one status line:
+ *
+ *         <pre>
+ * output outputBase.listing
+ * diagnostic 12 SYNTAXERR: Expected ...
+ * printed successfully loaded 20 reserved words from reservedwords.txt
+ * done ok 31
+ * </pre>
+ *
+ *         The status is ok with the compile's milliseconds, timeout, or error with a reason. A
+ *         compile that times out can't be stopped mid parse, so its worker finishes in the
+ *         background and its outputs may still appear. Requests writing the same outputBase at once
+ *         race on those files. When started with -Dkuxhausen.metrics each compile is recorded, and
+ *         metrics answers with the latest compile of every source in Prometheus text, one metric
+ *         line per line of it.
+ */
+public class CompileServer {
+
+  public static final int DEFAULT_PORT = 7134;
+
+  private static final String[] EXTENSIONS = {".listing", ".token", ".loc"};
+
+  /**
+   * bytes in the program warmUp() compiles
+   */
+  private static final long WARMUP_SIZE = 48 * 1024;
+
+  private ExecutorService workers;
+  private AtomicInteger inline = new AtomicInteger();
+  private File scratch;
+
+  public CompileServer(int threads) throws IOException {
+    workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private AtomicInteger count = new AtomicInteger();
+
+      public Thread newThread(Runnable r) {
+        // the parsers recurse once per nested construct, so compiles need a deep stack
+        Thread t = new Thread(null, r, "compile-" + count.incrementAndGet(), 1L << 28);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    scratch = File.createTempFile("kuxhausen", "-inline");
+    scratch.delete();
+    scratch.mkdirs();
+    scratch.deleteOnExit();
+    Batch.routeConsole();
+  }
+
+  /**
+   * compiles a generated program with every driver a few times, so the first real request is
+   * already running compiled code
+   */
+  public void warmUp(int rounds) throws IOException {
+    File source = new File(scratch, "warmup.pas");
+    FileOutputStream out = new FileOutputStream(source);
+    try {
+      out.write(CorpusGenerator.program(WARMUP_SIZE, 1).getBytes("US-ASCII"));
+    } finally {
+      out.close();
+    }
+    String base = new File(scratch, "warmup").getPath();
+    for (int i = 0; i < rounds; i++)
+      for (String driver : new String[] {"Project1", "Project2", "Project34"})
+        compile(driver, source.getPath(), base, 0);
+    for (String extension : EXTENSIONS)
+      new File(base + extension).delete();
+    source.delete();
+    Metrics.clear();
+  }
+
+  public void serve(int port) throws IOException {
+    ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    System.out.println("listening on " + server.getLocalSocketAddress());
+    while (true) {
+      final Socket client = server.accept();
+      Thread connection = new Thread(new Runnable() {
+        public void run() {
+          handle(client);
+        }
+      }, "connection-" + client.getPort());
+      connection.setDaemon(true);
+      connection.start();
+    }
+  }
+
+  private void handle(Socket client) {
+    try {
+      InputStream in = new BufferedInputStream(client.getInputStream());
+      PrintWriter out =
+          new PrintWriter(new OutputStreamWriter(client.getOutputStream(), "UTF-8"), false);
+      for (String request = readLine(in); request != null; request = readLine(in)) {
+        if (request.trim().isEmpty())
+          continue;
+        respond(request.trim().split("\\s+"), in, out);
+        out.flush();
+      }
+    } catch (IOException e) {
+      // client went away
+    } finally {
+      try {
+        client.close();
+      } catch (IOException e) {
+        // already closed
+      }
+    }
+  }
+
+  private void respond(String[] words, InputStream in, PrintWriter out) throws IOException {
+    if (words.length == 1 && words[0].equals("metrics")) {
+      if (!Metrics.ENABLED) {
+        out.println("done error metrics are off, start with -Dkuxhausen.metrics=base");
+        return;
+      }
+      for (String line : Metrics.toPrometheus().split("\n"))
+        out.println("metric " + line);
+      out.println("done ok 0");
+      return;
+    }
+    if (words.length != 5 || !(words[2].equals("file") || words[2].equals("text"))) {
+      out.println("done error expected: driver timeoutMillis file|text sourcePath|byteCount"
+          + " outputBase");
+      return;
+    }
+    String driver = words[0];
+    long timeout;
+    try {
+      timeout = Long.parseLong(words[1]);
+    } catch (NumberFormatException e) {
+      out.println("done error bad timeout " + words[1]);
+      return;
+    }
+
+    String source = words[3];
+    File inlineSource = null;
+    if (words[2].equals("text")) {
+      int length;
+      try {
+        length = Integer.parseInt(words[3]);
+      } catch (NumberFormatException e) {
+        out.println("done error bad byte count " + words[3]);
+        return;
+      }
+      inlineSource = new File(scratch, inline.incrementAndGet() + ".pas");
+      FileOutputStream file = new FileOutputStream(inlineSource);
+      try {
+        byte[] buffer = new byte[8192];
+        while (length > 0) {
+          int n = in.read(buffer, 0, Math.min(buffer.length, length));
+          if (n < 0)
+            throw new IOException("source ended early");
+          file.write(buffer, 0, n);
+          length -= n;
+        }
+      } finally {
+        file.close();
+      }
+      source = inlineSource.getPath();
+    }
+
+    Result result = compile(driver, source, words[4], timeout);
+    if (inlineSource != null) {
+      // a compile that timed out may still be reading it
+      if (result.status.equals("timeout"))
+        inlineSource.deleteOnExit();
+      else
+        inlineSource.delete();
+    }
+    if (result.printed != null)
+      for (String line : report(words[4], result.printed))
+        out.println(line);
+    out.println("done " + result.status);
+  }
+
+  private static class Result {
+    String status;
+
+    /**
+     * what the compile printed, null unless it finished
+     */
+    byte[] printed;
+
+    Result(String status, byte[] printed) {
+      this.status = status;
+      this.printed = printed;
+    }
+  }
+
+  private Result compile(final String driver, final String source, final String output,
+      long timeout) {
+    if (!new File(source).isFile())
+      return new Result("error source not found " + source, null);
+    final Batch.Job job;
+    switch (driver) {
+      case "Project1":
+        job = new Batch.Job() {
+          public void compile(String ignored) {
+            Project1.compile(source, output);
+          }
+        };
+        break;
+      case "Project2":
+        job = new Batch.Job() {
+          public void compile(String ignored) {
+            Project2.compile(source, output);
+          }
+        };
+        break;
+      case "Project34":
+        job = new Batch.Job() {
+          public void compile(String ignored) {
+            Project34.compile(source, output);
+          }
+        };
+        break;
+      default:
+        return new Result("error unknown driver " + driver, null);
+    }
+    for (String extension : EXTENSIONS)
+      new File(output + extension).delete();
+
+    long start = System.nanoTime();
+    Future<byte[]> result = workers.submit(new Callable<byte[]>() {
+      public byte[] call() {
+        return Batch.capture(new Batch.Job() {
+          public void compile(String filename) {
+            Metrics.record(driver, source, job, filename);
+          }
+        }, source);
+      }
+    });
+    try {
+      byte[] printed = (timeout > 0) ? result.get(timeout, TimeUnit.MILLISECONDS) : result.get();
+      return new Result("ok " + (System.nanoTime() - start) / 1000000, printed);
+    } catch (TimeoutException e) {
+      result.cancel(true);
+      return new Result("timeout", null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new Result("error interrupted", null);
+    } catch (ExecutionException e) {
+      return new Result("error " + e.getCause(), null);
+    }
+  }
+
+  /**
+   * @return output, diagnostic and printed lines for the compile that wrote to output
+   */
+  private ArrayList<String> report(String output, byte[] printed) throws IOException {
+    ArrayList<String> lines = new ArrayList<String>();
+    for (String extension : EXTENSIONS)
+      if (new File(output + extension).isFile())
+        lines.add("output " + output + extension);
+
+    File listing = new File(output + ".listing");
+    if (listing.isFile()) {
+      BufferedReader in = new BufferedReader(new FileReader(listing));
+      try {
+        // error messages follow the line they were found on, see Utils.writeListingEntry
+        String line = "0";
+        for (String l = in.readLine(); l != null; l = in.readLine()) {
+          if (l.startsWith("LEXERR: ") || l.startsWith("SYNTAXERR: ")
+              || l.startsWith("SEMANTICERR: "))
+            lines.add("diagnostic " + line + " " + l);
+          else
+            line = l.substring(0, Math.min(8, l.length())).trim();
+        }
+      } finally {
+        in.close();
+      }
+    }
+
+    for (String l : new String(printed, Batch.CONSOLE_CHARSET).split("\\r?\\n"))
+      if (!l.isEmpty())
+        lines.add("printed " + l);
+    return lines;
+  }
+
+  /**
+   * reads one \n terminated line of UTF-8 without buffering past it, since source bytes may follow
+   */
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b = in.read();
+    if (b < 0)
+      return null;
+    while (b >= 0 && b != '\n') {
+      line.write(b);
+      b = in.read();
+    }
+    return line.toString("UTF-8");
+  }
+
+  /**
+   * Usage: CompileServer [-port n] [-threads n] [-warmup rounds]
+   */
+  public static void main(String[] args) throws IOException {
+    int port = DEFAULT_PORT;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int warmup = 3;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-port":
+          port = Integer.parseInt(args[++i]);
+          break;
+        case "-threads":
+          threads = Integer.parseInt(args[++i]);
+          break;
+        case "-warmup":
+          warmup = Integer.parseInt(args[++i]);
+          break;
+        default:
+          System.out.println("Usage: CompileServer [-port n] [-threads n] [-warmup rounds]");
+          return;
+      }
+    }
+    CompileServer server = new CompileServer(threads);
+    server.warmUp(warmup);
+    server.serve(port);
+  }
+}
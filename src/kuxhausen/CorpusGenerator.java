@@ -0,0 +1,761 @@
+package kuxhausen;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * @author Eric Kuxhausen Writes synthetic programs for scale testing by expanding the productions
+ *         of the left factored grammar in doc/, starting from PROGRAM. The choice between a
+ *         nonterminal's productions is steered so that every name is declared before it is used and
+ *         every expression type checks, and so that the program stops growing at the requested
+ *         size, nesting depth, procedure count and parameter count. Lexical, syntax and semantic
+ *         errors can be seeded into a fraction of the statements.
+ */
+public class CorpusGenerator {
+
+  /**
+   * lines are wrapped well before the lexer's 72 char limit
+   */
+  private static final int WRAP = 60;
+
+  private static final String[] BAD_LEXEMES = {"abcdefghijkl", "0012", "12345678901", "1.50",
+      "@"};
+
+  /**
+   * approximate size of the program in bytes
+   */
+  long size = 64 * 1024;
+  /**
+   * deepest nesting of procedures, and of compound, if and while statements
+   */
+  int depth = 4;
+  int procedures = 8;
+  /**
+   * most parameters any procedure takes
+   */
+  int params = 3;
+  /**
+   * deepest nesting of parenthesized and indexing expressions
+   */
+  int expressionDepth = 3;
+  /**
+   * fraction of statements to seed each kind of error into
+   */
+  double lexErrors;
+  double syntaxErrors;
+  double semanticErrors;
+
+  private Grammar grammar;
+  private Random random;
+
+  private Writer out;
+  private long written;
+  private int column;
+  private String last = "";
+
+  private ArrayList<Scope> scopes = new ArrayList<Scope>();
+  private int names;
+  private int procsLeft;
+  private Name pending;
+  private boolean lowerBound;
+
+  private int statementLevel;
+  private int expressionLevel;
+  private boolean diving;
+  private long bodyStatements;
+
+  private boolean lexPending;
+  private boolean syntaxPending;
+  private boolean semanticPending;
+  private int seeded;
+
+  private static class Name {
+    String spelling;
+    /**
+     * INT, REAL, AINT or AREAL for vars and params, null otherwise
+     */
+    PasType type;
+    ArrayList<PasType> params = new ArrayList<PasType>();
+    int plannedParams;
+
+    Name(String spelling, PasType type) {
+      this.spelling = spelling;
+      this.type = type;
+    }
+  }
+
+  private static class Scope {
+    ArrayList<Name> vars = new ArrayList<Name>();
+    ArrayList<Name> procs = new ArrayList<Name>();
+    Name proc;
+    /**
+     * procedures still to be declared directly in this scope
+     */
+    int nestedLeft;
+  }
+
+  /**
+   * inherited attribute of a nonterminal: the type an expression must have, the var or procedure
+   * it refers to, and how many more items a list should hold
+   */
+  private static class Attr {
+    PasType type;
+    Name name;
+    int count;
+    boolean compare;
+
+    Attr(PasType type, Name name, int count) {
+      this.type = type;
+      this.name = name;
+      this.count = count;
+    }
+
+    Attr less() {
+      Attr a = new Attr(type, name, count - 1);
+      a.compare = compare;
+      return a;
+    }
+  }
+
+  /**
+   * the production picked for a nonterminal along with whatever was decided while picking it
+   */
+  private static class Choice {
+    String[] rhs;
+    PasType type;
+    Name name;
+    boolean compare;
+  }
+
+  public CorpusGenerator(String grammarPath) throws IOException {
+    grammar = new Grammar(grammarPath);
+  }
+
+  /**
+   * writes one program to w
+   */
+  public void generate(long seed, Writer w) throws IOException {
+    random = new Random(seed);
+    out = w;
+    written = 0;
+    column = 0;
+    scopes.clear();
+    names = 0;
+    procsLeft = procedures;
+    statementLevel = 0;
+    expressionLevel = 0;
+    bodyStatements = 0;
+    lexPending = syntaxPending = semanticPending = false;
+    seeded = 0;
+
+    Scope global = new Scope();
+    global.nestedLeft = Integer.MAX_VALUE;
+    scopes.add(global);
+    expand("PROGRAM", null);
+    newline();
+    out.flush();
+  }
+
+  /**
+   * @return an error free program of about size bytes with one procedure per 4KB and the default
+   *         settings otherwise, always the same for the same seed
+   */
+  public static String program(long size, long seed) throws IOException {
+    CorpusGenerator g = new CorpusGenerator(Grammar.PATH);
+    g.size = size;
+    g.procedures = (int) Math.max(1, size / 4096);
+    StringWriter w = new StringWriter();
+    g.generate(seed, w);
+    return w.toString();
+  }
+
+  public long getWritten() {
+    return written;
+  }
+
+  /**
+   * @return the number of errors seeded into the last program
+   */
+  public int getSeeded() {
+    return seeded;
+  }
+
+  private void expand(String lhs, Attr attr) throws IOException {
+    // the last symbol of a production is expanded in place, so long lists don't recurse
+    while (true) {
+      Choice choice = choose(lhs, attr);
+      enter(lhs);
+      String tail = null;
+      Attr tailAttr = null;
+      for (int i = 0; i < choice.rhs.length; i++) {
+        String symbol = choice.rhs[i];
+        if (!grammar.isNonterminal(symbol)) {
+          terminal(lhs, symbol, attr, choice);
+        } else if (i == choice.rhs.length - 1 && !hasExit(lhs)) {
+          tail = symbol;
+          tailAttr = childAttr(lhs, choice, i, attr);
+        } else {
+          expand(symbol, childAttr(lhs, choice, i, attr));
+        }
+      }
+      exit(lhs);
+      if (tail == null)
+        return;
+      lhs = tail;
+      attr = tailAttr;
+    }
+  }
+
+  private static boolean hasExit(String lhs) {
+    return lhs.equals("SUBPROGRAM_DECLARATION") || lhs.equals("STATEMENT")
+        || lhs.equals("EXPRESSION");
+  }
+
+  private void enter(String lhs) {
+    if (lhs.equals("STATEMENT"))
+      statementLevel++;
+    else if (lhs.equals("EXPRESSION"))
+      expressionLevel++;
+  }
+
+  private void exit(String lhs) {
+    if (lhs.equals("SUBPROGRAM_DECLARATION"))
+      scopes.remove(scopes.size() - 1);
+    else if (lhs.equals("STATEMENT"))
+      statementLevel--;
+    else if (lhs.equals("EXPRESSION"))
+      expressionLevel--;
+  }
+
+  /**
+   * @param first first symbol of the wanted production, or "" for the e production
+   */
+  private Choice pick(String lhs, String first) {
+    Choice c = new Choice();
+    for (String[] rhs : grammar.getProductions(lhs)) {
+      if ((rhs.length == 0) ? first.isEmpty() : rhs[0].equals(first)) {
+        c.rhs = rhs;
+        return c;
+      }
+    }
+    throw new IllegalStateException("no production " + lhs + " -> " + first + " ...");
+  }
+
+  private boolean chance(double p) {
+    return random.nextDouble() < p;
+  }
+
+  private Scope scope() {
+    return scopes.get(scopes.size() - 1);
+  }
+
+  private boolean numeric(PasType t) {
+    return t == PasType.INT || t == PasType.REAL;
+  }
+
+  private Choice choose(String lhs, Attr attr) {
+    switch (lhs) {
+      case "PROGRAM^":
+        return pick(lhs, "DECLARATIONS");
+      case "PROGRAM^^":
+      case "SUBPROGRAM_DECLARATION^^":
+        return pick(lhs, nestedProcedures() ? "SUBPROGRAM_DECLARATIONS" : "COMPOUND_STATEMENT");
+      case "SUBPROGRAM_DECLARATION^":
+        if (chance(0.5))
+          return pick(lhs, "DECLARATIONS");
+        return pick(lhs, nestedProcedures() ? "SUBPROGRAM_DECLARATIONS" : "COMPOUND_STATEMENT");
+      case "SUBPROGRAM_DECLARATIONS`":
+        return pick(lhs, nestedProcedures() ? "SUBPROGRAM_DECLARATION" : "");
+      case "IDENTIFIER_LIST`":
+      case "EXPRESSION_LIST`":
+        return pick(lhs, (attr.count > 0) ? "," : "");
+      case "DECLARATIONS`":
+        return pick(lhs, (attr.count > 0) ? "var" : "");
+      case "PARAMETER_LIST`":
+      case "STATEMENT_LIST`":
+        return pick(lhs, (attr.count > 0) ? ";" : "");
+      case "COMPOUND_STATEMENT^":
+        return pick(lhs, (attr.count > 0) ? "OPTIONAL_STATEMENTS" : "end");
+      case "TYPE":
+        return pick(lhs, (numeric(pending.type)) ? "STANDARD_TYPE" : "array");
+      case "STANDARD_TYPE":
+        return pick(lhs, (element(pending.type) == PasType.INT) ? "integer" : "real");
+      case "SUBPROGRAM_HEAD^":
+        return pick(lhs, (scope().proc.plannedParams > 0) ? "ARGUMENTS" : ";");
+      case "STATEMENT":
+        return statement();
+      case "STATEMENT^":
+        return pick(lhs, chance(0.5) ? "else" : "");
+      case "VARIABLE^":
+      case "FACTOR^":
+        return pick(lhs, (!numeric(attr.name.type) && numeric(attr.type)) ? "[" : "");
+      case "PROCEDURE_STATEMENT^":
+        return pick(lhs, attr.name.params.isEmpty() ? "" : "(");
+      case "EXPRESSION":
+        return expression(attr);
+      case "EXPRESSION^":
+        return pick(lhs, attr.compare ? "relop" : "");
+      case "SIMPLE_EXPRESSION":
+        return pick(lhs, (numeric(attr.type) && chance(0.1)) ? "SIGN" : "TERM");
+      case "SIMPLE_EXPRESSION`":
+        return pick(lhs, (operator(attr.type) && chance(0.3)) ? "addop" : "");
+      case "TERM`":
+        return pick(lhs, (operator(attr.type) && chance(0.3)) ? "mulop" : "");
+      case "FACTOR":
+        return factor(attr);
+      case "SIGN":
+        return pick(lhs, chance(0.5) ? "+" : "-");
+      default:
+        Choice c = new Choice();
+        c.rhs = grammar.getProductions(lhs).get(0);
+        return c;
+    }
+  }
+
+  private boolean operator(PasType t) {
+    return t != PasType.AINT && t != PasType.AREAL && expressionLevel < expressionDepth;
+  }
+
+  private boolean nestedProcedures() {
+    return procsLeft > 0 && scope().nestedLeft > 0;
+  }
+
+  private Choice statement() {
+    if (statementLevel >= depth)
+      diving = false;
+    rollErrors();
+
+    if (statementLevel < depth && (diving || chance(0.25))) {
+      switch (random.nextInt(3)) {
+        case 0:
+          return pick("STATEMENT", "COMPOUND_STATEMENT");
+        case 1:
+          return pick("STATEMENT", "if");
+        default:
+          return pick("STATEMENT", "while");
+      }
+    }
+
+    Name proc = visibleProcedure();
+    if (proc != null && chance(0.3)) {
+      Choice c = pick("STATEMENT", "PROCEDURE_STATEMENT");
+      c.name = proc;
+      return c;
+    }
+
+    Choice c = pick("STATEMENT", "VARIABLE");
+    c.name = visibleVar(null);
+    c.type = element(c.name.type);
+    if (semanticPending && chance(0.5)) {
+      // assign the other numeric type
+      semanticPending = false;
+      seeded++;
+      c.type = (c.type == PasType.INT) ? PasType.REAL : PasType.INT;
+    }
+    return c;
+  }
+
+  private void rollErrors() {
+    if (chance(lexErrors))
+      lexPending = true;
+    if (chance(syntaxErrors))
+      syntaxPending = true;
+    if (chance(semanticErrors))
+      semanticPending = true;
+  }
+
+  private Choice expression(Attr attr) {
+    Choice c = pick("EXPRESSION", "SIMPLE_EXPRESSION");
+    c.type = attr.type;
+    if (attr.type == PasType.BOOL && (expressionLevel >= expressionDepth || chance(0.7))) {
+      // a comparison of two numeric operands
+      c.type = chance(0.5) ? PasType.INT : PasType.REAL;
+      c.compare = true;
+    }
+    return c;
+  }
+
+  private Choice factor(Attr attr) {
+    Choice c;
+    boolean deeper = expressionLevel < expressionDepth;
+    if (attr.type == PasType.BOOL) {
+      c = pick("FACTOR", (deeper && chance(0.25)) ? "not" : "(");
+    } else if (!numeric(attr.type)) {
+      c = pick("FACTOR", "id");
+      c.name = visibleVar(attr.type);
+    } else if (deeper && chance(0.15)) {
+      c = pick("FACTOR", "(");
+    } else if (chance(0.3)) {
+      c = pick("FACTOR", "num");
+    } else {
+      c = pick("FACTOR", "id");
+      c.name = visibleVar(attr.type);
+    }
+    return c;
+  }
+
+  private Attr childAttr(String lhs, Choice choice, int i, Attr attr) {
+    String child = choice.rhs[i];
+
+    if (child.equals("COMPOUND_STATEMENT")) {
+      if (lhs.equals("STATEMENT"))
+        return new Attr(null, null, 1 + random.nextInt(3));
+      // the body of the program or a procedure, sized so the remaining bytes are spread evenly
+      double perStatement = (bodyStatements > 0) ? (double) written / bodyStatements : 40;
+      long count = (long) ((size - written) / (procsLeft + 1) / perStatement);
+      count = Math.max(1, Math.min(count, Integer.MAX_VALUE));
+      bodyStatements += count;
+      diving = true;
+      return new Attr(null, null, (int) count);
+    }
+
+    switch (lhs) {
+      case "PROGRAM":
+        return (child.equals("IDENTIFIER_LIST")) ? new Attr(null, null, 2) : null;
+      case "PROGRAM^":
+        return (child.equals("DECLARATIONS")) ? new Attr(null, null, 4 + random.nextInt(4))
+            : null;
+      case "SUBPROGRAM_DECLARATION^":
+        return (child.equals("DECLARATIONS")) ? new Attr(null, null, 1 + random.nextInt(3))
+            : null;
+      case "SUBPROGRAM_HEAD^":
+        return new Attr(null, null, scope().proc.plannedParams);
+      case "STATEMENT":
+        if (child.equals("EXPRESSION"))
+          return new Attr((choice.name != null) ? choice.type : PasType.BOOL, null, 0);
+        if (child.equals("VARIABLE") || child.equals("PROCEDURE_STATEMENT"))
+          return new Attr(element(choice.name.type), choice.name, 0);
+        return null;
+      case "PROCEDURE_STATEMENT^":
+        return new Attr(null, attr.name, attr.name.params.size());
+      case "EXPRESSION_LIST":
+      case "EXPRESSION_LIST`":
+        if (child.equals("EXPRESSION"))
+          return new Attr(attr.name.params.get(attr.name.params.size() - attr.count), null, 0);
+        break;
+      case "VARIABLE^":
+      case "FACTOR^":
+        return new Attr(PasType.INT, null, 0);
+      case "FACTOR":
+        if (child.equals("FACTOR^"))
+          return new Attr(attr.type, choice.name, 0);
+        break;
+      case "EXPRESSION":
+        Attr operand = new Attr(choice.type, null, 0);
+        operand.compare = choice.compare;
+        return operand;
+    }
+
+    if (attr != null && (child.equals(lhs) || child.equals(lhs + "`")))
+      return attr.less();
+    return attr;
+  }
+
+  private static PasType element(PasType t) {
+    if (t == PasType.AINT)
+      return PasType.INT;
+    if (t == PasType.AREAL)
+      return PasType.REAL;
+    return t;
+  }
+
+  private String fresh(String prefix) {
+    return prefix + (names++);
+  }
+
+  /**
+   * @param type null for any var, INT or REAL for a scalar or an array of them, AINT or AREAL for
+   *        an array
+   */
+  private Name visibleVar(PasType type) {
+    int total = 0;
+    for (Scope s : scopes)
+      total += s.vars.size();
+    for (int tries = 0; tries < 32; tries++) {
+      int r = random.nextInt(total);
+      for (Scope s : scopes) {
+        if (r < s.vars.size()) {
+          Name v = s.vars.get(r);
+          if (type == null || v.type == type || (numeric(type) && element(v.type) == type))
+            return v;
+          break;
+        }
+        r -= s.vars.size();
+      }
+    }
+    // every type has a global declared first
+    for (Name v : scopes.get(0).vars)
+      if (v.type == type || element(v.type) == type)
+        return v;
+    throw new IllegalStateException("no visible var of type " + type);
+  }
+
+  private Name visibleProcedure() {
+    int total = 0;
+    for (Scope s : scopes)
+      total += s.procs.size();
+    if (total == 0)
+      return null;
+    int r = random.nextInt(total);
+    for (Scope s : scopes) {
+      if (r < s.procs.size())
+        return s.procs.get(r);
+      r -= s.procs.size();
+    }
+    return null;
+  }
+
+  private PasType randomType() {
+    switch (random.nextInt(6)) {
+      case 0:
+        return PasType.AINT;
+      case 1:
+        return PasType.AREAL;
+      case 2:
+      case 3:
+        return PasType.INT;
+      default:
+        return PasType.REAL;
+    }
+  }
+
+  private void declareVar(boolean param) {
+    PasType type = randomType();
+    int globals = scopes.get(0).vars.size();
+    if (scopes.size() == 1 && globals < 4)
+      type = new PasType[] {PasType.INT, PasType.REAL, PasType.AINT, PasType.AREAL}[globals];
+    pending = new Name(fresh("v"), type);
+    scope().vars.add(pending);
+    if (param)
+      scope().proc.params.add(type);
+    emit(pending.spelling);
+  }
+
+  private void declareProcedure() {
+    Name proc = new Name(fresh("p"), null);
+    proc.plannedParams = random.nextInt(params + 1);
+    scope().procs.add(proc);
+    scope().nestedLeft--;
+    procsLeft--;
+
+    Scope inner = new Scope();
+    inner.proc = proc;
+    inner.nestedLeft = (scopes.size() < depth) ? 1 + random.nextInt(2) : 0;
+    scopes.add(inner);
+    emit(proc.spelling);
+  }
+
+  /**
+   * writes a var or procedure reference, or a seeded error in its place
+   */
+  private void use(String spelling, boolean name) {
+    if (lexPending) {
+      lexPending = false;
+      seeded++;
+      emit(BAD_LEXEMES[random.nextInt(BAD_LEXEMES.length)]);
+    } else if (name && semanticPending) {
+      semanticPending = false;
+      seeded++;
+      emit(fresh("u"));
+    } else {
+      emit(spelling);
+    }
+  }
+
+  private void terminal(String lhs, String symbol, Attr attr, Choice choice) throws IOException {
+    switch (symbol) {
+      case "id":
+        switch (lhs) {
+          case "PROGRAM":
+            emit("generated");
+            return;
+          case "IDENTIFIER_LIST":
+          case "IDENTIFIER_LIST`":
+            emit(fresh("f"));
+            return;
+          case "DECLARATIONS":
+          case "DECLARATIONS`":
+            declareVar(false);
+            return;
+          case "PARAMETER_LIST":
+          case "PARAMETER_LIST`":
+            declareVar(true);
+            return;
+          case "SUBPROGRAM_HEAD":
+            declareProcedure();
+            return;
+          case "FACTOR":
+            use(choice.name.spelling, true);
+            return;
+          default:
+            // VARIABLE and PROCEDURE_STATEMENT
+            use(attr.name.spelling, true);
+            return;
+        }
+      case "num":
+        if (lhs.equals("TYPE")) {
+          lowerBound = !lowerBound;
+          emit(lowerBound ? "1" : Integer.toString(2 + random.nextInt(20)));
+        } else {
+          use(literal(attr.type), false);
+        }
+        return;
+      case "relop":
+        emit(new String[] {"=", "<>", "<", "<=", ">=", ">"}[random.nextInt(6)]);
+        return;
+      case "addop":
+        emit((attr.type == PasType.BOOL) ? "or" : chance(0.5) ? "+" : "-");
+        return;
+      case "mulop":
+        if (attr.type == PasType.BOOL)
+          emit("and");
+        else if (attr.type == PasType.INT)
+          emit(new String[] {"*", "div", "mod"}[random.nextInt(3)]);
+        else
+          emit(chance(0.5) ? "*" : "/");
+        return;
+      case "assignop":
+        symbol = ":=";
+        break;
+    }
+
+    if (syntaxPending
+        && (symbol.equals(":=") || symbol.equals("then") || symbol.equals("do")
+            || symbol.equals(")") || symbol.equals("end"))) {
+      // leave it out
+      syntaxPending = false;
+      seeded++;
+      return;
+    }
+    if (symbol.equals("end") && column > 0)
+      newline();
+    emit(symbol);
+    if (symbol.equals(";") || symbol.equals("begin"))
+      newline();
+  }
+
+  private String literal(PasType type) {
+    if (type == PasType.INT)
+      return Integer.toString(1 + random.nextInt(9999));
+    String real = (1 + random.nextInt(999)) + "." + random.nextInt(10) + (1 + random.nextInt(9));
+    if (chance(0.2))
+      real += "E" + (chance(0.5) ? "-" : "") + (1 + random.nextInt(9));
+    return real;
+  }
+
+  private void emit(String text) {
+    try {
+      if (column > 0 && column + 1 + text.length() > WRAP)
+        newline();
+      if (column == 0) {
+        int indent = Math.min(2 * (scopes.size() - 1 + statementLevel), 30);
+        for (int i = 0; i < indent; i++)
+          write(" ");
+      } else if (!(text.equals(";") || text.equals(",") || text.equals(")") || text.equals("]")
+          || text.equals(".") || text.equals(":") || last.equals("(") || last.equals("["))) {
+        write(" ");
+      }
+      write(text);
+      last = text;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void write(String text) throws IOException {
+    out.write(text);
+    written += text.length();
+    column += text.length();
+  }
+
+  private void newline() {
+    try {
+      out.write('\n');
+      written++;
+      column = 0;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Usage: CorpusGenerator [-size bytes[k|m]] [-depth n] [-procedures n] [-params n]
+   * [-expressionDepth n] [-lexErrors f] [-syntaxErrors f] [-semanticErrors f] [-seed n] out.pas
+   */
+  public static void main(String[] args) throws Exception {
+    final CorpusGenerator g = new CorpusGenerator(Grammar.PATH);
+    long seed = 1;
+    String path = null;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-size":
+          g.size = bytes(args[++i]);
+          break;
+        case "-depth":
+          g.depth = Integer.parseInt(args[++i]);
+          break;
+        case "-procedures":
+          g.procedures = Integer.parseInt(args[++i]);
+          break;
+        case "-params":
+          g.params = Integer.parseInt(args[++i]);
+          break;
+        case "-expressionDepth":
+          g.expressionDepth = Integer.parseInt(args[++i]);
+          break;
+        case "-lexErrors":
+          g.lexErrors = Double.parseDouble(args[++i]);
+          break;
+        case "-syntaxErrors":
+          g.syntaxErrors = Double.parseDouble(args[++i]);
+          break;
+        case "-semanticErrors":
+          g.semanticErrors = Double.parseDouble(args[++i]);
+          break;
+        case "-seed":
+          seed = Long.parseLong(args[++i]);
+          break;
+        default:
+          path = args[i];
+      }
+    }
+    if (path == null) {
+      System.out.println("usage: CorpusGenerator [-size bytes[k|m]] [-depth n] [-procedures n]"
+          + " [-params n] [-expressionDepth n] [-lexErrors f] [-syntaxErrors f]"
+          + " [-semanticErrors f] [-seed n] out.pas");
+      return;
+    }
+
+    final long finalSeed = seed;
+    final Writer w = new BufferedWriter(new FileWriter(path));
+    // generation recurses once per level of nesting, which may be asked to be very deep
+    Thread runner = new Thread(null, new Runnable() {
+      public void run() {
+        try {
+          g.generate(finalSeed, w);
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }, "generator", 1L << 28);
+    runner.start();
+    runner.join();
+    w.close();
+    System.out.println("wrote " + g.getWritten() + " bytes with " + g.getSeeded()
+        + " seeded errors to " + path);
+  }
+
+  private static long bytes(String s) {
+    char unit = Character.toLowerCase(s.charAt(s.length() - 1));
+    if (unit == 'k')
+      return Long.parseLong(s.substring(0, s.length() - 1)) * 1024;
+    if (unit == 'm')
+      return Long.parseLong(s.substring(0, s.length() - 1)) * 1024 * 1024;
+    return Long.parseLong(s);
+  }
+}
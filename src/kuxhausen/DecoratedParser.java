@@ -4,7 +4,8 @@ import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import kuxhausen.Token.*;
 
@@ -13,8 +14,21 @@ import kuxhausen.Token.*;
  */
 public class DecoratedParser {
 
+  /**
+   * when set (-Dkuxhausen.twoPhase=true) program and procedure bodies are type checked after the
+   * whole program is parsed, concurrently, see checkBodies(). Streaming parses stay in one pass.
+   */
+  public static final boolean TWO_PHASE = Boolean.getBoolean("kuxhausen.twoPhase");
+
   private Lexar mL;
 
+  /**
+   * tokens taken from mL a block at a time, and the next one to hand out
+   */
+  private Token[] mBlock;
+  private int mBlockNext;
+  private int mBlockSize;
+
   /**
    * current Token
    */
@@ -25,29 +39,98 @@ public class DecoratedParser {
   /**
    * sync set for the current nonTerminal
    */
-  private Token[] mSet;
+  private SyncSet mSet;
 
   private ArrayList<Token> mTokens = new ArrayList<Token>();
+  private StreamingWriter mOut;
+
+  /**
+   * set when parsing from a TokenStore, see DecoratedParser(TokenStore, String)
+   */
+  private TokenStore mLexed;
+  private TokenStore.Cursor mCursor;
+  private TokenStore mOutStore;
 
   private ArrayDeque<GreenNode> mScope = new ArrayDeque<GreenNode>();
   {
     GreenNode invisibleRoot = new GreenNode();
-    invisibleRoot.setName("");
+    invisibleRoot.setSymbol(-1);
     mScope.add(invisibleRoot);
   }
 
+  /**
+   * index over mScope's declarations for constant time name lookups
+   */
+  private ScopeTable mNames = new ScopeTable();
+
   private PrintWriter output;
 
+  /**
+   * Bodies left to check, in source order, null unless parsing in two phases. Semantic checks are
+   * off while mChecking is false.
+   */
+  private ArrayList<Body> mBodies;
+  private boolean mChecking = true;
+
+  /**
+   * when checking a body parsed from a Lexar, its tokens as the first phase saw them
+   */
+  private ArrayList<Token> mReplay;
+  private int mReplayNext;
+
   DecoratedParser(Lexar lex, String loc) {
+    this(lex, loc, null);
+  }
+
+  /**
+   * @param out if not null, tokens and errors are handed to it as they occur instead of being kept
+   *        for getTokenList()
+   */
+  DecoratedParser(Lexar lex, String loc, StreamingWriter out) {
+    mOut = out;
     try {
       output = new PrintWriter(loc);
     } catch (FileNotFoundException e) {
     }
 
     mL = lex;
-    consumeToken();
-    program();
-    exitScope();
+    parse();
+  }
+
+  /**
+   * Parses tokens already lexed by Lexar.lexAll(). Tokens and errors are collected in
+   * getTokenStore() rather than getTokenList().
+   */
+  DecoratedParser(TokenStore lexed, String loc) {
+    try {
+      output = new PrintWriter(loc);
+    } catch (FileNotFoundException e) {
+    }
+
+    mLexed = lexed;
+    mCursor = lexed.cursor();
+    mOutStore = new TokenStore(lexed.getSourceBuffer());
+    parse();
+  }
+
+  private void parse() {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+    if (TWO_PHASE && mOut == null) {
+      mBodies = new ArrayList<Body>();
+      mNames = new ScopeTable(true);
+    }
+    try {
+      consumeToken();
+      program();
+      exitScope();
+    } finally {
+      // a parse that throws mustn't leave a pipelined Lexar's thread waiting
+      if (mL != null)
+        mL.close();
+    }
+    if (mBodies != null)
+      checkBodies();
+    timer.stop();
 
     output.close();
   }
@@ -56,37 +139,85 @@ public class DecoratedParser {
     if (mT != null && mT.type == TokType.$)
       return;
     mConsumed = mT;
-    Token next = mL.getNextToken();
+    if (mReplay != null) {
+      mT = mReplay.get(mReplayNext++);
+      emit(mT);
+      mLine = mT.position;
+      return;
+    }
+    if (mCursor != null) {
+      // semantic actions hold on to consumed tokens, so each one gets its own Token
+      mCursor.next();
+      mT = mCursor.get();
+      mOutStore.copy(mLexed, mCursor.index());
+      mLine = mT.position;
+      return;
+    }
+    Token next = nextLexed();
     mT = next;
-    mTokens.add(next);
+    emit(next);
     mLine = next.position;
   }
 
+  private void emit(Token t) {
+    if (mOutStore != null)
+      mOutStore.add(t);
+    else if (mOut != null)
+      mOut.add(t);
+    else
+      mTokens.add(t);
+  }
+
+  /**
+   * @return the next token from mL, taking another block once this one is used up
+   */
+  private Token nextLexed() {
+    if (mBlockNext == mBlockSize) {
+      if (mBlock == null)
+        mBlock = new Token[Lexar.BLOCK_SIZE];
+      mBlockSize = mL.getNextTokens(mBlock, 0, mBlock.length);
+      mBlockNext = 0;
+    }
+    return mBlock[mBlockNext++];
+  }
+
   public ArrayList<Token> getTokenList() {
     return mTokens;
   }
 
-  private class SyntaxErr extends Exception {
+  public TokenStore getTokenStore() {
+    return mOutStore;
+  }
+
+  /**
+   * Unwinds from match() to the nonterminal that recovers. It carries nothing, so one instance
+   * without a stack trace is thrown every time.
+   */
+  private static class SyntaxErr extends Exception {
+    SyntaxErr() {
+      super(null, null, false, false);
+    }
   }
 
+  private static final SyntaxErr SYNTAX_ERR = new SyntaxErr();
+
   Token pair(TokType type, Enum attr) {
     return new Token(type, (attr != null) ? attr.ordinal() : -1, null, null);
   }
 
   public void match(TokType type, Enum attr) throws SyntaxErr {
-    Token desired = pair(type, attr);
-    if (mT.fullTypeMatch(desired)) {
+    if (mT.typeMatch(type, (attr != null) ? attr.ordinal() : -1)) {
       consumeToken();
     } else {
       Token[] toks = {pair(type, attr)};
       wanted(toks);
-      throw new SyntaxErr();
+      throw SYNTAX_ERR;
     }
   }
 
   private void wanted(Token[] wanted) {
     String message = generateErrorMessage(wanted);
-    mTokens.add(new Token(TokType.SYNTAXERR, message, mT.lexeme, mT.position));
+    emit(new Token(TokType.SYNTAXERR, message, mT.lexeme, mT.position));
   }
 
   private String generateErrorMessage(Token[] tokens) {
@@ -100,124 +231,90 @@ public class DecoratedParser {
   }
 
   private void sync() {
-    while (mT.type != TokType.$ && !inSet(mSet)) {
+    while (mT.type != TokType.$ && !mSet.contains(mT)) {
       consumeToken();
     }
   }
 
-  private boolean inSet(Token[] syncSet) {
-    for (Token s : syncSet) {
-      if (mT.fullTypeMatch(s))
-        return true;
-    }
-    return false;
-  }
-
-  public void checkAddGreen(String name) {
+  public void checkAddGreen(Token id) {
+    int name = id.symbol;
     GreenNode green = new GreenNode();
-    green.setName(name);
-
-    boolean hasConflict = false;
-    for (GreenNode g : mScope) {
-      for (Node n : g.getChildren()) {
-        if (n instanceof GreenNode && n.getName().equals(name)) {
-          hasConflict = true;
-        }
-      }
-    }
-    if (hasConflict) {
-      mTokens.add(new Token(TokType.SEMANTICERR, "A program or procedure named " + green.getName()
-          + " already defined in this scope", name, mLine));
-      // go ahead and add node anyway with modified name so that subtree can be typechecked
-      green.setName(green.getName() + "#");
+    green.setSymbol(name);
+
+    if (mNames.findGreen(name) != null) {
+      emit(new Token(TokType.SEMANTICERR, "A program or procedure named " + id.lexeme
+          + " already defined in this scope", id.lexeme, mLine));
+      // go ahead and add node anyway with a symbol no lookup matches so that subtree can be
+      // typechecked
+      green.setSymbol(-1);
+    } else {
+      mNames.addGreen(name, green);
     }
     mScope.getFirst().getChildren().add(green);
     mScope.addFirst(green);
+    mNames.enterScope();
   }
 
-  public void checkAddBlue(String name, PasType type) {
-    boolean hasConflict = false;
-    for (Node n : mScope.getFirst().getChildren()) {
-      if (n instanceof BlueNode && n.getName().equals(name)) {
-        hasConflict = true;
-      }
-    }
-    if (hasConflict) {
-      mTokens.add(new Token(TokType.SEMANTICERR, "A var or proc_param named " + name
-          + " already defined in this scope", name, mLine));
+  public void checkAddBlue(Token id, PasType type) {
+    int name = id.symbol;
+    if (mNames.declaresBlue(name)) {
+      emit(new Token(TokType.SEMANTICERR, "A var or proc_param named " + id.lexeme
+          + " already defined in this scope", id.lexeme, mLine));
     } else {
       BlueNode b = new BlueNode();
-      b.setName(name);
+      b.setSymbol(name);
       b.setType(type);
       mScope.getFirst().getChildren().add(b);
+      mNames.addBlue(name, b);
+      switch (type) {
+        case PPINT:
+        case PPREAL:
+        case PPAINT:
+        case PPAREAL:
+          mScope.getFirst().addParam(b.getPPFreeType());
+          break;
+      }
     }
   }
 
-  public void checkGreen(String name) {
-    for (GreenNode g : mScope) {
-      for (Node n : g.getChildren()) {
-        if (n instanceof GreenNode && n.getName().equals(name)) {
-          return;
-        }
-      }
-    }
-    mTokens.add(new Token(TokType.SEMANTICERR, "No program or procedured named " + name
-        + " defined yet in this scope", name, mLine));
+  public void checkGreen(Token id) {
+    if (!mChecking || mNames.findGreen(id.symbol) != null)
+      return;
+    emit(new Token(TokType.SEMANTICERR, "No program or procedured named " + id.lexeme
+        + " defined yet in this scope", id.lexeme, mLine));
   }
 
-  public List<BlueNode> getPPs(String name) {
-    ArrayList<BlueNode> result = new ArrayList<BlueNode>();
-    GreenNode parrent = null;
-    for (GreenNode g : mScope) {
-      for (Node n : g.getChildren()) {
-        if (n instanceof GreenNode && n.getName().equals(name)) {
-          parrent = (GreenNode) n;
-        }
-      }
-    }
-    if (parrent != null) {
-      for (Node n : parrent.getChildren()) {
-        if (n instanceof BlueNode) {
-          switch (((BlueNode) n).getType()) {
-            case PPAINT:
-              result.add((BlueNode) n);
-              break;
-            case PPAREAL:
-              result.add((BlueNode) n);
-              break;
-            case PPINT:
-              result.add((BlueNode) n);
-              break;
-            case PPREAL:
-              result.add((BlueNode) n);
-              break;
-          }
-        }
-      }
-    }
-    return result;
+  /**
+   * @return the parameter types of the named procedure, empty if there is no such procedure
+   */
+  public PasType[] getSignature(int name) {
+    if (!mChecking)
+      return new PasType[0];
+    GreenNode parrent = mNames.findGreen(name);
+    return (parrent != null) ? parrent.getSignature() : new PasType[0];
   }
 
-  public PasType checkBlue(String name) {
-    for (GreenNode g : mScope) {
-      for (Node n : g.getChildren()) {
-        if (n instanceof BlueNode && n.getName().equals(name)) {
-          return ((BlueNode) n).getType();
-        }
-      }
-    }
-    mTokens.add(new Token(TokType.SEMANTICERR, "No var or proc_param named " + name
-        + " defined yet in this scope", name, mLine));
+  public PasType checkBlue(Token id) {
+    if (!mChecking)
+      return PasType.ERR;
+    BlueNode b = mNames.findBlue(id.symbol);
+    if (b != null)
+      return b.getType();
+    emit(new Token(TokType.SEMANTICERR, "No var or proc_param named " + id.lexeme
+        + " defined yet in this scope", id.lexeme, mLine));
     return PasType.ERR;
   }
 
   public void exitScope() {
     mScope.removeFirst();
+    mNames.exitScope();
   }
 
   public PasType reportErrStar(String msg) {
+    if (!mChecking)
+      return PasType.ERR;
     Token t = new Token(TokType.SEMANTICERR, msg, "", mLine);
-    mTokens.add(t);
+    emit(t);
     return PasType.ERR;
   }
 
@@ -228,8 +325,147 @@ public class DecoratedParser {
     mScope.getFirst().scopeOffset += tw.width;
   }
 
+  /**
+   * Where a program or procedure body starts, what it can see and, once checked, what it emits
+   */
+  private static class Body {
+    /**
+     * range of the first phase's output the body emitted
+     */
+    int from;
+    int to;
+
+    /**
+     * current token at the start of the body, and its row when parsing from a TokenStore
+     */
+    Token first;
+    int row;
+
+    ScopeTable names;
+
+    /**
+     * output of checking the body, standing in for from..to
+     */
+    ArrayList<Token> tokens;
+    TokenStore store;
+  }
+
+  /**
+   * compoundStatement() of a program or procedure. Statements never declare anything, so in the
+   * first of two phases the body is only parsed, with semantic checks off, and noted along with a
+   * frozen view of the names visible from it for checkBodies().
+   */
+  void body() {
+    if (mBodies == null) {
+      compoundStatement();
+      return;
+    }
+    Body b = new Body();
+    b.from = outputSize();
+    b.first = mT;
+    b.row = (mCursor != null) ? mCursor.index() : -1;
+    b.names = mNames.freeze();
+    mChecking = false;
+    compoundStatement();
+    mChecking = true;
+    b.to = outputSize();
+    mBodies.add(b);
+  }
+
+  private void check(ArrayList<Body> bodies, int from, int to) {
+    for (int i = from; i < to; i++) {
+      Body b = bodies.get(i);
+      DecoratedParser checker = new DecoratedParser(this, b);
+      b.tokens = checker.mTokens;
+      b.store = checker.mOutStore;
+    }
+  }
+
+  private int outputSize() {
+    return (mOutStore != null) ? mOutStore.size() : mTokens.size();
+  }
+
+  /**
+   * Parses one body again, as noted by body(), with semantic checks on
+   */
+  private DecoratedParser(DecoratedParser whole, Body b) {
+    mNames = b.names;
+    if (whole.mLexed != null) {
+      mLexed = whole.mLexed;
+      mCursor = mLexed.cursor(b.row);
+      mOutStore = new TokenStore(mLexed.getSourceBuffer());
+      mT = mCursor.get();
+    } else {
+      // the tokens the first phase consumed are its output less the errors it added
+      mReplay = new ArrayList<Token>(b.to - b.from);
+      for (Token t : whole.mTokens.subList(b.from, b.to))
+        if (t.type != TokType.SYNTAXERR && t.type != TokType.SEMANTICERR)
+          mReplay.add(t);
+      mT = b.first;
+    }
+    mLine = mT.position;
+    compoundStatement();
+  }
+
+  /**
+   * Second phase: checks every body noted by body() against the finished scope tree, split into
+   * groups of neighbouring bodies run on a pool, then replaces each body's unchecked output with
+   * its checked output. Parsing is deterministic and doesn't depend on types, so each body parses
+   * exactly as it did the first time and only gains its SEMANTICERRs.
+   */
+  private void checkBodies() {
+    final ArrayList<Body> bodies = mBodies;
+    mBodies = null;
+    if (bodies.isEmpty())
+      return;
+    int threads = Runtime.getRuntime().availableProcessors();
+    long[] sizes = new long[bodies.size()];
+    for (int i = 0; i < sizes.length; i++)
+      sizes[i] = bodies.get(i).to - bodies.get(i).from + 1;
+    ArrayList<Future<Void>> results = new ArrayList<Future<Void>>();
+    for (final int[] run : Workers.group(sizes, (threads < 2) ? 1 : threads * 4)) {
+      if (threads < 2) {
+        check(bodies, run[0], run[1]);
+        continue;
+      }
+      results.add(Workers.submit(new Callable<Void>() {
+        public Void call() {
+          check(bodies, run[0], run[1]);
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> result : results)
+      Workers.await(result);
+
+    if (mOutStore != null) {
+      TokenStore merged = new TokenStore(mOutStore.getSourceBuffer());
+      int next = 0;
+      for (Body b : bodies) {
+        for (; next < b.from; next++)
+          merged.copy(mOutStore, next);
+        for (int i = 0; i < b.store.size(); i++)
+          merged.copy(b.store, i);
+        next = b.to;
+      }
+      for (; next < mOutStore.size(); next++)
+        merged.copy(mOutStore, next);
+      mOutStore = merged;
+    } else {
+      ArrayList<Token> merged = new ArrayList<Token>(mTokens.size());
+      int next = 0;
+      for (Body b : bodies) {
+        merged.addAll(mTokens.subList(next, b.from));
+        merged.addAll(b.tokens);
+        next = b.to;
+      }
+      merged.addAll(mTokens.subList(next, mTokens.size()));
+      mTokens = merged;
+    }
+  }
+
   void program() {
-    mSet = new Token[] {};
+    mSet = SyncSet.PROGRAM;
 
     try {
       switch (mT.type) {
@@ -239,7 +475,7 @@ public class DecoratedParser {
               match(TokType.RESWRD, ResWordAttr.PROGRAM);
               match(TokType.ID, null);
               Token id = mConsumed;
-              checkAddGreen(id.lexeme);
+              checkAddGreen(id);
               match(TokType.OPENPAREN, null);
               identifierList();
               match(TokType.CLOSEPAREN, null);
@@ -260,7 +496,7 @@ public class DecoratedParser {
   }
 
   void programTail() {
-    mSet = new Token[] {};
+    mSet = SyncSet.PROGRAM;
 
     try {
       switch (mT.type) {
@@ -272,11 +508,11 @@ public class DecoratedParser {
               return;
             case PROC:
               subprogramDeclarations();
-              compoundStatement();
+              body();
               match(TokType.DOT, null);
               return;
             case BEGIN:
-              compoundStatement();
+              body();
               match(TokType.DOT, null);
               return;
           }
@@ -295,7 +531,7 @@ public class DecoratedParser {
   }
 
   void programTailTail() {
-    mSet = new Token[] {};
+    mSet = SyncSet.PROGRAM;
 
     try {
       switch (mT.type) {
@@ -303,11 +539,11 @@ public class DecoratedParser {
           switch (ResWordAttr.values()[(int) mT.attribute]) {
             case PROC:
               subprogramDeclarations();
-              compoundStatement();
+              body();
               match(TokType.DOT, null);
               return;
             case BEGIN:
-              compoundStatement();
+              body();
               match(TokType.DOT, null);
               return;
           }
@@ -325,14 +561,14 @@ public class DecoratedParser {
   }
 
   void identifierList() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
         case ID:
           match(TokType.ID, null);
           Token id = mConsumed;
-          checkAddBlue(id.lexeme, PasType.PGPP);
+          checkAddBlue(id, PasType.PGPP);
           identifierListTail();
           return;
       }
@@ -347,7 +583,7 @@ public class DecoratedParser {
   }
 
   void identifierListTail() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -357,7 +593,7 @@ public class DecoratedParser {
           match(TokType.COMMA, null);
           match(TokType.ID, null);
           Token id = mConsumed;
-          checkAddBlue(id.lexeme, PasType.PGPP);
+          checkAddBlue(id, PasType.PGPP);
           identifierListTail();
           return;
       }
@@ -372,9 +608,7 @@ public class DecoratedParser {
   }
 
   void declarations() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -387,7 +621,7 @@ public class DecoratedParser {
               match(TokType.COLON, null);
               TypeWidth type = type();
               match(TokType.SEMICOLON, null);
-              checkAddBlue(id.lexeme, type.type);
+              checkAddBlue(id, type.type);
               computeOffset(id, type);
               declarationsTail();
               return;
@@ -406,9 +640,7 @@ public class DecoratedParser {
   }
 
   void declarationsTail() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -421,7 +653,7 @@ public class DecoratedParser {
               match(TokType.COLON, null);
               TypeWidth type = type();
               match(TokType.SEMICOLON, null);
-              checkAddBlue(id.lexeme, type.type);
+              checkAddBlue(id, type.type);
               computeOffset(id, type);
               declarationsTail();
               return;
@@ -445,7 +677,7 @@ public class DecoratedParser {
   }
 
   TypeWidth type() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TYPE;
 
     try {
       switch (mT.type) {
@@ -496,7 +728,7 @@ public class DecoratedParser {
   }
 
   PasType standardType() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TYPE;
 
     try {
       switch (mT.type) {
@@ -525,7 +757,7 @@ public class DecoratedParser {
   }
 
   void subprogramDeclarations() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -550,7 +782,7 @@ public class DecoratedParser {
   }
 
   void subprogramDeclarationsTail() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -578,7 +810,7 @@ public class DecoratedParser {
   }
 
   void subprogramDeclaration() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     // try {
     switch (mT.type) {
@@ -603,7 +835,7 @@ public class DecoratedParser {
   }
 
   void subprogramDeclarationTail() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     // try {
     switch (mT.type) {
@@ -615,10 +847,10 @@ public class DecoratedParser {
             return;
           case PROC:
             subprogramDeclarations();
-            compoundStatement();
+            body();
             return;
           case BEGIN:
-            compoundStatement();
+            body();
             return;
         }
         break;
@@ -636,7 +868,7 @@ public class DecoratedParser {
   }
 
   void subprogramDeclarationTailTail() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     // try {
     switch (mT.type) {
@@ -644,10 +876,10 @@ public class DecoratedParser {
         switch (ResWordAttr.values()[(int) mT.attribute]) {
           case PROC:
             subprogramDeclarations();
-            compoundStatement();
+            body();
             return;
           case BEGIN:
-            compoundStatement();
+            body();
             return;
         }
         break;
@@ -664,9 +896,7 @@ public class DecoratedParser {
   }
 
   void subprogramHead() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.VAR), pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_HEAD;
 
     try {
       switch (mT.type) {
@@ -676,7 +906,7 @@ public class DecoratedParser {
               match(TokType.RESWRD, ResWordAttr.PROC);
               match(TokType.ID, null);
               Token id = mConsumed;
-              checkAddGreen(id.lexeme);
+              checkAddGreen(id);
               subprogramHeadTail();
               return;
           }
@@ -693,9 +923,7 @@ public class DecoratedParser {
   }
 
   void subprogramHeadTail() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.VAR), pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_HEAD;
 
     try {
       switch (mT.type) {
@@ -718,7 +946,7 @@ public class DecoratedParser {
   }
 
   void arguments() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     try {
       switch (mT.type) {
@@ -739,7 +967,7 @@ public class DecoratedParser {
   }
 
   void parameterList() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -763,7 +991,7 @@ public class DecoratedParser {
               x = PasType.PPAREAL;
               break;
           }
-          checkAddBlue(id.lexeme, x);
+          checkAddBlue(id, x);
           parameterListTail();
           return;
       }
@@ -778,7 +1006,7 @@ public class DecoratedParser {
   }
 
   void parameterListTail() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -805,7 +1033,7 @@ public class DecoratedParser {
               x = PasType.PPAREAL;
               break;
           }
-          checkAddBlue(id.lexeme, x);
+          checkAddBlue(id, x);
           parameterListTail();
           return;
       }
@@ -820,7 +1048,7 @@ public class DecoratedParser {
   }
 
   void compoundStatement() {
-    mSet = new Token[] {pair(TokType.DOT, null), pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.COMPOUND_STATEMENT;
 
     try {
       switch (mT.type) {
@@ -844,7 +1072,7 @@ public class DecoratedParser {
   }
 
   void compoundStatementTail() {
-    mSet = new Token[] {pair(TokType.DOT, null), pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.COMPOUND_STATEMENT;
 
     try {
       switch (mT.type) {
@@ -890,7 +1118,7 @@ public class DecoratedParser {
   }
 
   void optionalStatements() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.END)};
+    mSet = SyncSet.STATEMENT_LIST;
 
     // try {
     switch (mT.type) {
@@ -928,7 +1156,7 @@ public class DecoratedParser {
   }
 
   void statementList() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.END)};
+    mSet = SyncSet.STATEMENT_LIST;
 
     // try {
     switch (mT.type) {
@@ -971,7 +1199,7 @@ public class DecoratedParser {
   }
 
   void statementListTail() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.END)};
+    mSet = SyncSet.STATEMENT_LIST;
 
     try {
       switch (mT.type) {
@@ -998,9 +1226,7 @@ public class DecoratedParser {
   }
 
   void statement() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -1059,9 +1285,7 @@ public class DecoratedParser {
   }
 
   void statementTail() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -1091,14 +1315,14 @@ public class DecoratedParser {
   }
 
   PasType variable() {
-    mSet = new Token[] {pair(TokType.ASSIGNOP, null)};
+    mSet = SyncSet.VARIABLE;
 
     try {
       switch (mT.type) {
         case ID:
           match(TokType.ID, null);
           Token id = mConsumed;
-          PasType idT = checkBlue(id.lexeme);
+          PasType idT = checkBlue(id);
           PasType varT = variableTail();
 
           if (idT == PasType.ERR || varT == PasType.ERR)
@@ -1145,7 +1369,7 @@ public class DecoratedParser {
   }
 
   PasType variableTail() {
-    mSet = new Token[] {pair(TokType.ASSIGNOP, null)};
+    mSet = SyncSet.VARIABLE;
 
     try {
       switch (mT.type) {
@@ -1170,9 +1394,7 @@ public class DecoratedParser {
   }
 
   void procedureStatment() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -1182,9 +1404,10 @@ public class DecoratedParser {
               match(TokType.RESWRD, ResWordAttr.CALL);
               match(TokType.ID, null);
               Token id = mConsumed;
-              checkGreen(id.lexeme);
-              int numDesired = getPPs(id.lexeme).size();
-              int numSeen = procedureStatementTail(new PPPair(id.lexeme, 0));
+              checkGreen(id);
+              PasType[] signature = getSignature(id.symbol);
+              int numDesired = signature.length;
+              int numSeen = procedureStatementTail(new PPPair(signature, 0));
               if (numDesired != numSeen)
                 reportErrStar("procedure " + id.lexeme + " called with " + numSeen
                     + " params, yet expected " + numDesired);
@@ -1203,9 +1426,7 @@ public class DecoratedParser {
   }
 
   int procedureStatementTail(PPPair i) {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -1240,7 +1461,7 @@ public class DecoratedParser {
   }
 
   int expressionList(PPPair i) {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     // try {
     switch (mT.type) {
@@ -1287,22 +1508,21 @@ public class DecoratedParser {
   int expressionListHelper(PPPair i) {
     PasType exp1 = expression();
 
-    if (getPPs(i.procName).size() <= i.paramNum) {
+    if (i.signature.length <= i.paramNum) {
       reportErrStar("Unexpected procedure param of type" + exp1.toString());
 
-    } else if (getPPs(i.procName).get(i.paramNum).getPPFreeType() == PasType.ERR
-        || exp1 == PasType.ERR) {
+    } else if (i.signature[i.paramNum] == PasType.ERR || exp1 == PasType.ERR) {
       // error being passed up, no new err here.
 
-    } else if (getPPs(i.procName).get(i.paramNum).getPPFreeType() != exp1) {
+    } else if (i.signature[i.paramNum] != exp1) {
       reportErrStar("Incorrect procedure param type: got " + exp1 + ", expected "
-          + getPPs(i.procName).get(i.paramNum).getPPFreeType());
+          + i.signature[i.paramNum]);
     }
-    return expressionListTail(new PPPair(i.procName, i.paramNum + 1));
+    return expressionListTail(new PPPair(i.signature, i.paramNum + 1));
   }
 
   int expressionListTail(PPPair i) {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -1325,11 +1545,7 @@ public class DecoratedParser {
   }
 
   PasType expression() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.EXPRESSION;
 
     // try {
     switch (mT.type) {
@@ -1376,11 +1592,7 @@ public class DecoratedParser {
   }
 
   PasType expressionTail(PasType i) {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.EXPRESSION;
 
     try {
       switch (mT.type) {
@@ -1443,11 +1655,7 @@ public class DecoratedParser {
   }
 
   PasType simpleExpression() {
-    mSet =
-        new Token[] {pair(TokType.RELOP, null), pair(TokType.SEMICOLON, null),
-            pair(TokType.RESWRD, ResWordAttr.END), pair(TokType.RESWRD, ResWordAttr.ELSE),
-            pair(TokType.RESWRD, ResWordAttr.THEN), pair(TokType.CLOSEBRACKET, null),
-            pair(TokType.COMMA, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.SIMPLE_EXPRESSION;
 
     // try {
     switch (mT.type) {
@@ -1504,11 +1712,7 @@ public class DecoratedParser {
   }
 
   PasType simpleExpressionTail(PasType i) {
-    mSet =
-        new Token[] {pair(TokType.RELOP, null), pair(TokType.SEMICOLON, null),
-            pair(TokType.RESWRD, ResWordAttr.END), pair(TokType.RESWRD, ResWordAttr.ELSE),
-            pair(TokType.RESWRD, ResWordAttr.THEN), pair(TokType.CLOSEBRACKET, null),
-            pair(TokType.COMMA, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.SIMPLE_EXPRESSION;
 
     try {
       switch (mT.type) {
@@ -1572,12 +1776,7 @@ public class DecoratedParser {
   }
 
   PasType term() {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TERM;
 
     // try {
     switch (mT.type) {
@@ -1613,12 +1812,7 @@ public class DecoratedParser {
   }
 
   PasType termTail(PasType i) {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TERM;
 
     try {
       switch (mT.type) {
@@ -1684,12 +1878,7 @@ public class DecoratedParser {
   }
 
   PasType factor() {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null), pair(TokType.MULOP, null)};
+    mSet = SyncSet.FACTOR;
 
     try {
       switch (mT.type) {
@@ -1715,7 +1904,7 @@ public class DecoratedParser {
           return eType;
         case ID:
           match(TokType.ID, null);
-          PasType idType = checkBlue(mConsumed.getAttribute());
+          PasType idType = checkBlue(mConsumed);
           PasType fTail = factorTail();
           if (fTail == PasType.ERR || idType == PasType.ERR)
             return PasType.ERR;
@@ -1775,12 +1964,7 @@ public class DecoratedParser {
   }
 
   PasType factorTail() {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null), pair(TokType.MULOP, null)};
+    mSet = SyncSet.FACTOR;
 
     try {
       switch (mT.type) {
@@ -1835,9 +2019,7 @@ public class DecoratedParser {
   }
 
   void sign() {
-    mSet =
-        new Token[] {pair(TokType.ID, null), pair(TokType.NUM, null),
-            pair(TokType.OPENPAREN, null), pair(TokType.RESWRD, ResWordAttr.NOT)};
+    mSet = SyncSet.SIGN;
 
     try {
       switch (mT.type) {
@@ -0,0 +1,149 @@
+package kuxhausen;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * @author Eric Kuxhausen A grammar read from one of the files in doc/, one production per line as
+ *         "number LHS -> symbols" with e for an empty right hand side. Symbols that have productions
+ *         are nonterminals and the rest are terminals. The first left hand side is the start
+ *         symbol. FIRST and FOLLOW sets are computed once on load.
+ */
+public class Grammar {
+
+  public static final String PATH =
+      "doc/2014PascalGrammarSubset_SpecChange_Numbered_NullProdRemoved_LeftRecurRemoved_LeftFactored";
+
+  /**
+   * stands for the empty string in FIRST sets
+   */
+  public static final String EPSILON = "e";
+  public static final String END = "$";
+
+  private String start;
+  private LinkedHashMap<String, ArrayList<String[]>> productions =
+      new LinkedHashMap<String, ArrayList<String[]>>();
+  private LinkedHashMap<String, LinkedHashSet<String>> first =
+      new LinkedHashMap<String, LinkedHashSet<String>>();
+  private LinkedHashMap<String, LinkedHashSet<String>> follow =
+      new LinkedHashMap<String, LinkedHashSet<String>>();
+
+  public Grammar(String path) throws IOException {
+    BufferedReader in = new BufferedReader(new FileReader(path));
+    try {
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        String[] words = line.trim().split("\\s+");
+        if (words.length < 3 || !words[2].equals("->"))
+          continue;
+        ArrayList<String> rhs = new ArrayList<String>();
+        for (int i = 3; i < words.length; i++)
+          if (!words[i].equals(EPSILON))
+            rhs.add(symbol(words[i]));
+        String lhs = symbol(words[1]);
+        if (start == null)
+          start = lhs;
+        if (!productions.containsKey(lhs))
+          productions.put(lhs, new ArrayList<String[]>());
+        productions.get(lhs).add(rhs.toArray(new String[rhs.size()]));
+      }
+    } finally {
+      in.close();
+    }
+    computeFirst();
+    computeFollow();
+  }
+
+  /**
+   * the grammar file spells one tail SIMPLE_EXPRESSION' where every other uses a backtick
+   */
+  private static String symbol(String word) {
+    return word.replace('\'', '`');
+  }
+
+  public String getStart() {
+    return start;
+  }
+
+  public boolean isNonterminal(String symbol) {
+    return productions.containsKey(symbol);
+  }
+
+  /**
+   * @return nonterminals in the order they first appear as a left hand side
+   */
+  public Set<String> getNonterminals() {
+    return productions.keySet();
+  }
+
+  /**
+   * @return right hand sides of lhs in file order, e productions being empty
+   */
+  public ArrayList<String[]> getProductions(String lhs) {
+    return productions.get(lhs);
+  }
+
+  /**
+   * @return FIRST of symbols[from..], including EPSILON if they can all derive the empty string
+   */
+  public LinkedHashSet<String> first(String[] symbols, int from) {
+    LinkedHashSet<String> result = new LinkedHashSet<String>();
+    for (int i = from; i < symbols.length; i++) {
+      if (!isNonterminal(symbols[i])) {
+        result.add(symbols[i]);
+        return result;
+      }
+      LinkedHashSet<String> f = first.get(symbols[i]);
+      for (String s : f)
+        if (!s.equals(EPSILON))
+          result.add(s);
+      if (!f.contains(EPSILON))
+        return result;
+    }
+    result.add(EPSILON);
+    return result;
+  }
+
+  public Set<String> getFollow(String nonterminal) {
+    return follow.get(nonterminal);
+  }
+
+  private void computeFirst() {
+    for (String lhs : productions.keySet())
+      first.put(lhs, new LinkedHashSet<String>());
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (String lhs : productions.keySet())
+        for (String[] rhs : productions.get(lhs))
+          changed |= first.get(lhs).addAll(first(rhs, 0));
+    }
+  }
+
+  private void computeFollow() {
+    for (String lhs : productions.keySet())
+      follow.put(lhs, new LinkedHashSet<String>());
+    follow.get(start).add(END);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (String lhs : productions.keySet()) {
+        for (String[] rhs : productions.get(lhs)) {
+          for (int i = 0; i < rhs.length; i++) {
+            if (!isNonterminal(rhs[i]))
+              continue;
+            LinkedHashSet<String> rest = first(rhs, i + 1);
+            LinkedHashSet<String> f = follow.get(rhs[i]);
+            if (rest.remove(EPSILON))
+              changed |= f.addAll(follow.get(lhs));
+            changed |= f.addAll(rest);
+          }
+        }
+      }
+    }
+  }
+}
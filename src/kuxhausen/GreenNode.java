@@ -1,24 +1,38 @@
 package kuxhausen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class GreenNode implements Node {
 
-  private String mName;
+  private int mSymbol;
   private ArrayList<Node> mChildren = new ArrayList<Node>();
   public int scopeOffset;
+  private PasType[] mSignature = new PasType[0];
 
   @Override
-  public String getName() {
-    return mName;
+  public int getSymbol() {
+    return mSymbol;
   }
 
   @Override
-  public void setName(String name) {
-    mName = name;
+  public void setSymbol(int symbol) {
+    mSymbol = symbol;
   }
 
   public ArrayList<Node> getChildren() {
     return mChildren;
   }
+
+  /**
+   * @return types of this procedure's parameters in declaration order, without the PP marking
+   */
+  public PasType[] getSignature() {
+    return mSignature;
+  }
+
+  public void addParam(PasType type) {
+    mSignature = Arrays.copyOf(mSignature, mSignature.length + 1);
+    mSignature[mSignature.length - 1] = type;
+  }
 }
@@ -1,9 +1,15 @@
 package kuxhausen;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import static java.lang.System.out;
 import static kuxhausen.Token.*;
@@ -13,12 +19,87 @@ import static kuxhausen.Token.*;
  */
 public class Lexar {
 
-  private HashMap<String, Token> reservedWordTable = new HashMap<String, Token>();
+  private ReservedWords reservedWords;
   private SourceBuffer source = new SourceBuffer();
   private SourcePointer srcPos = new SourcePointer();
   private SymbolTable symbols = new SymbolTable();
   private ArrayList<Token> tokens = new ArrayList<Token>();
 
+  /**
+   * file being compiled on the thread that opened this, null unless Metrics are enabled
+   */
+  private Metrics.FileMetrics metrics = Metrics.current();
+
+  /**
+   * when set (-Dkuxhausen.tableDriven=true) tokens come from the single pass ScanTable DFA instead
+   * of trying each machine in turn. Both modes produce the same token stream.
+   */
+  public static final boolean TABLE_DRIVEN = Boolean.getBoolean("kuxhausen.tableDriven");
+
+  /**
+   * when set (-Dkuxhausen.mappedInput=true) open() memory maps the source file instead of reading
+   * it line by line through a Scanner
+   */
+  public static final boolean MAPPED_INPUT = Boolean.getBoolean("kuxhausen.mappedInput");
+
+  /**
+   * when set (-Dkuxhausen.streaming=true) the drivers lex straight off the reader through
+   * openStream() and write their output as tokens are produced
+   */
+  public static final boolean STREAMING = Boolean.getBoolean("kuxhausen.streaming");
+
+  /**
+   * when set (-Dkuxhausen.tokenStore=true) the drivers lex into a TokenStore with lexAll() and
+   * parse from that
+   */
+  public static final boolean TOKEN_STORE = Boolean.getBoolean("kuxhausen.tokenStore");
+
+  /**
+   * when set (-Dkuxhausen.parallelLex=true) the first getNextToken() or getNextTokens() lexes the
+   * whole source at once with lexInParallel() and later calls hand out its tokens
+   */
+  public static final boolean PARALLEL_LEX = Boolean.getBoolean("kuxhausen.parallelLex");
+
+  /**
+   * when set (-Dkuxhausen.pipelined=true) the first getNextToken() or getNextTokens() starts lexing
+   * on its own thread with pipeline() and later calls take its tokens as they come
+   */
+  public static final boolean PIPELINED = Boolean.getBoolean("kuxhausen.pipelined");
+
+  /**
+   * Per project spec, only consider upto 72 characters per line including \n
+   */
+  private static final int MAX_LINE_LENGTH = 71;
+
+  /**
+   * fewest lines worth handing to another thread
+   */
+  private static final int MIN_CHUNK_LINES = 1024;
+
+  /**
+   * tokens a pipelined Lexar's thread may get ahead of its reader
+   */
+  private static final int RING_SIZE = 1024;
+
+  /**
+   * tokens the parsers take per getNextTokens() call
+   */
+  static final int BLOCK_SIZE = 64;
+
+  private static ForkJoinPool chunkPool;
+
+  /**
+   * tokens lexed by lexInParallel() that getNextToken() hasn't handed out yet
+   */
+  private ArrayList<Token> lexedAhead;
+  private int nextAhead;
+
+  /**
+   * tokens from the thread started by pipeline(), null once it has handed over $ or been closed
+   */
+  private TokenRing ring;
+  private Thread lexingThread;
+
   public Lexar(Scanner file) {
     loadReservedWordTable();
 
@@ -26,46 +107,333 @@ public class Lexar {
       // Read source into buffer
       // Per project spec, only consider upto 72 characters per line including \n
       String line = file.nextLine();
-      source.addLine(line.substring(0, Math.min(71, line.length())) + "\n");
+      source.addLine(line.substring(0, Math.min(MAX_LINE_LENGTH, line.length())) + "\n");
     }
     file.close();
   }
 
-  private void loadReservedWordTable() {
-    try {
-      Scanner wordFile = new Scanner(new BufferedReader(new FileReader("input/reservedwords.txt")));
+  /**
+   * Reads source straight out of a (typically memory mapped) buffer of ASCII bytes. Lines end at
+   * \n, \r\n or \r just as with Scanner.nextLine(), and are truncated the same way.
+   */
+  public Lexar(ByteBuffer file) {
+    loadReservedWordTable();
 
-      while (wordFile.hasNextLine() && wordFile.hasNext()) {
-        String lexeme = wordFile.next();
-        String resType = wordFile.next();
-        int attribute = wordFile.nextInt();
+    int lineLength = 0;
+    boolean lineOpen = false;
+    int limit = file.limit();
+    for (int i = file.position(); i < limit; i++) {
+      char c = (char) (file.get(i) & 0xFF);
+      if (c == '\n' || c == '\r') {
+        if (c == '\r' && i + 1 < limit && file.get(i + 1) == '\n')
+          i++;
+        source.append('\n');
+        source.endLine();
+        lineLength = 0;
+        lineOpen = false;
+      } else {
+        if (lineLength < MAX_LINE_LENGTH)
+          source.append(c);
+        lineLength++;
+        lineOpen = true;
+      }
+    }
+    if (lineOpen) {
+      source.append('\n');
+      source.endLine();
+    }
+  }
 
-        if (resType.equals(TokType.ADDOP.toString())) {
-          reservedWordTable.put(lexeme, new Token(TokType.ADDOP, attribute, lexeme, srcPos));
-        } else if (resType.equals(TokType.MULOP.toString())) {
-          reservedWordTable.put(lexeme, new Token(TokType.MULOP, attribute, lexeme, srcPos));
-        } else {
-          for (ResWordAttr tt : ResWordAttr.values()) {
-            if (resType.equals(tt.toString())) {
-              reservedWordTable
-                  .put(lexeme, new Token(TokType.RESWRD, tt.ordinal(), lexeme, srcPos));
-            }
-          }
-        }
+  /**
+   * Streaming mode: lines are read only as the scanner reaches them and produced tokens are not
+   * kept, so getTokenList() returns null. Pair with a StreamingWriter, which lets the SourceBuffer
+   * drop lines once they are listed.
+   */
+  public Lexar(BufferedReader reader) {
+    loadReservedWordTable();
+    source.setFeed(reader, MAX_LINE_LENGTH);
+    tokens = null;
+  }
+
+  /**
+   * Lexes one chunk of whole's source, starting at the beginning of the given line, into its own
+   * SymbolTable. See lexInParallel().
+   */
+  private Lexar(Lexar whole, int fromLine) {
+    reservedWords = whole.reservedWords;
+    source = whole.source;
+    srcPos.lineNum = fromLine;
+    tokens = null;
+    metrics = null;
+  }
+
+  /**
+   * Opens the source at filepath through whichever loading path MAPPED_INPUT selects
+   * 
+   * @return null if the source can't be found
+   */
+  public static Lexar open(String filepath) {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.LOAD);
+    try {
+      if (MAPPED_INPUT) {
+        ByteBuffer mapped = mapFile(filepath);
+        return (mapped != null) ? new Lexar(mapped) : null;
       }
+      Scanner file = getFile(filepath);
+      return (file != null) ? new Lexar(file) : null;
+    } finally {
+      timer.stop();
+    }
+  }
 
-      wordFile.close();
-      out.println("successfully loaded " + reservedWordTable.size()
-          + " reserved words from reservedwords.txt");
+  /**
+   * Opens the source at filepath in streaming mode
+   * 
+   * @return null if the source can't be found
+   */
+  public static Lexar openStream(String filepath) {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.LOAD);
+    try {
+      return new Lexar(new BufferedReader(new FileReader(filepath)));
     } catch (FileNotFoundException e) {
-      out.println("reservedwords.txt not found");
+      out.println("Source not found at " + filepath);
+      return null;
+    } finally {
+      timer.stop();
     }
   }
 
+  private void loadReservedWordTable() {
+    reservedWords = ReservedWords.getShared();
+    if (reservedWords.wasFound())
+      out.println("successfully loaded " + reservedWords.size()
+          + " reserved words from reservedwords.txt");
+    else
+      out.println("reservedwords.txt not found");
+  }
+
   public Token getNextToken() {
+    Token result;
+    if (metrics != null) {
+      long start = System.nanoTime();
+      result = aheadOrNextToken();
+      metrics.lexed(System.nanoTime() - start, 1);
+    } else {
+      result = aheadOrNextToken();
+    }
+    if (result != null && tokens != null)
+      tokens.add(result);
+    return result;
+  }
+
+  /**
+   * Fills into from offset on with up to max tokens, stopping after the $ token, just as that many
+   * getNextToken() calls would. Lexes straight through without the per call bookkeeping, and
+   * records the whole block at once.
+   *
+   * @return how many tokens were filled in
+   */
+  public int getNextTokens(Token[] into, int offset, int max) {
+    if (max <= 0)
+      return 0;
+    long start = (metrics != null) ? System.nanoTime() : 0;
+    // the first token may be what sets up parallel or pipelined lexing
+    into[offset] = aheadOrNextToken();
+    int n = 1;
+    if (lexedAhead == null && ring == null) {
+      while (n < max && into[offset + n - 1].type != TokType.$)
+        into[offset + n++] = nextToken();
+    } else {
+      while (n < max && into[offset + n - 1].type != TokType.$)
+        into[offset + n++] = aheadOrNextToken();
+    }
+    if (metrics != null)
+      metrics.lexed(System.nanoTime() - start, n);
+    if (tokens != null) {
+      tokens.ensureCapacity(tokens.size() + n);
+      for (int i = offset; i < offset + n; i++)
+        tokens.add(into[i]);
+    }
+    return n;
+  }
+
+  private Token aheadOrNextToken() {
+    if (PARALLEL_LEX && lexedAhead == null && tokens != null && tokens.isEmpty())
+      lexInParallel();
+    else if (PIPELINED && !PARALLEL_LEX && ring == null && lexingThread == null && tokens != null
+        && tokens.isEmpty())
+      pipeline();
+    if (lexedAhead != null && nextAhead < lexedAhead.size())
+      return lexedAhead.get(nextAhead++);
+    if (ring != null) {
+      Token t = ring.take();
+      if (t.type == TokType.$) {
+        // the thread is done, so srcPos is where it left off and later calls keep returning $
+        ring = null;
+        join();
+      }
+      return t;
+    }
+    return nextToken();
+  }
+
+  /**
+   * Starts lexing the rest of the source on a thread of its own, which hands tokens to
+   * getNextToken() through a TokenRing. It stops after $, or when close() says nothing more will
+   * be read, and it waits whenever it gets RING_SIZE tokens ahead. Whatever it throws is rethrown
+   * by getNextToken() after the tokens before it. Until it has handed over $, or close() is called,
+   * nothing but getNextToken() and getNextTokens() may touch this Lexar. Needs a Lexar that hasn't
+   * produced any tokens and has its whole source loaded.
+   */
+  void pipeline() {
+    if (tokens == null || srcPos.lineNum != 0 || srcPos.charInLineNum != 0)
+      throw new IllegalStateException("pipeline needs a fresh Lexar with its source loaded");
+    final TokenRing r = new TokenRing(RING_SIZE);
+    lexingThread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          Token t;
+          do {
+            t = nextToken();
+          } while (r.put(t) && t.type != TokType.$);
+        } catch (Throwable e) {
+          r.fail(e);
+        }
+      }
+    }, "lexar");
+    lexingThread.setDaemon(true);
+    ring = r;
+    lexingThread.start();
+  }
+
+  /**
+   * Stops a pipelined Lexar whose reader is done before $, and waits for its thread to finish so
+   * the SymbolTable can be read. Tokens it lexed ahead are dropped, so nothing more should be read.
+   * Does nothing otherwise.
+   */
+  public void close() {
+    if (ring != null) {
+      ring.close();
+      ring = null;
+    }
+    join();
+  }
+
+  private void join() {
+    if (lexingThread == null)
+      return;
+    boolean interrupted = false;
+    while (true) {
+      try {
+        lexingThread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  /**
+   * Lexes the whole source up to and including the $ token, for getNextToken() to hand out. Tokens
+   * never span lines and every line ends in whitespace, so lexing always reaches the start of a
+   * line with no state carried over other than the SymbolTable, and reservedWordsMachine's check
+   * for (0,0) doesn't affect what it returns. The source is cut into line aligned chunks that are
+   * lexed concurrently, each into its own SymbolTable. Chunks are then merged in order, interning
+   * each chunk's names in id order so every identifier gets the id sequential lexing gives it.
+   * Needs a Lexar that hasn't produced any tokens and has its whole source loaded.
+   */
+  void lexInParallel() {
+    if (tokens == null || srcPos.lineNum != 0 || srcPos.charInLineNum != 0)
+      throw new IllegalStateException("lexInParallel needs a fresh Lexar with its source loaded");
+    int lines = source.getNumLines();
+    ForkJoinPool pool = chunkPool();
+    int chunks = Math.min(pool.getParallelism() * 4, lines / MIN_CHUNK_LINES);
+
+    lexedAhead = new ArrayList<Token>();
+    nextAhead = 0;
+    if (chunks < 2) {
+      for (Token t = nextToken();; t = nextToken()) {
+        lexedAhead.add(t);
+        if (t.type == TokType.$)
+          return;
+      }
+    }
+
+    ArrayList<ForkJoinTask<Lexar>> results = new ArrayList<ForkJoinTask<Lexar>>();
+    for (int c = 0; c < chunks; c++) {
+      final Lexar chunk = new Lexar(this, (int) ((long) lines * c / chunks));
+      final int to = (int) ((long) lines * (c + 1) / chunks);
+      results.add(pool.submit(new Callable<Lexar>() {
+        public Lexar call() {
+          chunk.lexChunk(to);
+          return chunk;
+        }
+      }));
+    }
+
+    Lexar chunk = null;
+    try {
+      for (ForkJoinTask<Lexar> result : results) {
+        chunk = result.get();
+        int[] ids = new int[chunk.symbols.size()];
+        for (int i = 0; i < ids.length; i++)
+          ids[i] = symbols.intern(chunk.symbols.getName(i));
+        for (Token t : chunk.lexedAhead)
+          if (t.symbol >= 0)
+            t.symbol = ids[t.symbol];
+        lexedAhead.addAll(chunk.lexedAhead);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while lexing", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new RuntimeException(cause);
+    }
+    // leave srcPos where sequential lexing would have, so later calls keep returning $
+    srcPos = chunk.srcPos;
+  }
+
+  /**
+   * lexes from srcPos up to the start of line to into lexedAhead, ending with the $ token if to is
+   * the end of the source
+   */
+  private void lexChunk(int to) {
+    lexedAhead = new ArrayList<Token>();
+    while (true) {
+      whitespaceMachine();
+      if (srcPos.lineNum >= to)
+        break;
+      lexedAhead.add(nextToken());
+    }
+    if (to == source.getNumLines())
+      lexedAhead.add(nextToken());
+  }
+
+  private static synchronized ForkJoinPool chunkPool() {
+    if (chunkPool == null)
+      chunkPool = new ForkJoinPool();
+    return chunkPool;
+  }
+
+  private Token nextToken() {
     Token result = null;
 
     whitespaceMachine();
+    if (TABLE_DRIVEN) {
+      result = eofMachine();
+      if (result == null) {
+        result = tableMachine();
+      }
+      return result;
+    }
+
     result = reservedWordsMachine();
     if (result == null) {
       result = eofMachine();
@@ -85,12 +453,94 @@ public class Lexar {
     if (result == null) {
       result = catchAllMachine();
     }
-
-    if (result != null)
-      tokens.add(result);
     return result;
   }
 
+  /**
+   * Replaces lines from up to but not including to with newLines, given without line terminators,
+   * and relexes just those lines. Tokens never span lines, so every other line's tokens are kept
+   * and the ones after the edit only have their line numbers moved. Identifiers that disappear
+   * stay in the SymbolTable. Needs a Lexar that kept its token list and has lexed up to the $
+   * token.
+   */
+  public void relex(int from, int to, String[] newLines) {
+    if (tokens == null || tokens.isEmpty() || tokens.get(tokens.size() - 1).type != TokType.$)
+      throw new IllegalStateException("relex needs a fully lexed source");
+    if (from < 0 || from > to || to > source.getNumLines())
+      throw new IllegalArgumentException("bad line range " + from + " to " + to);
+
+    String[] lines = new String[newLines.length];
+    for (int i = 0; i < newLines.length; i++)
+      lines[i] = newLines[i].substring(0, Math.min(MAX_LINE_LENGTH, newLines[i].length())) + "\n";
+    source.replaceLines(from, to, lines);
+
+    ArrayList<Token> lexed = new ArrayList<Token>();
+    int end = from + lines.length;
+    srcPos = new SourcePointer();
+    srcPos.lineNum = from;
+    while (true) {
+      whitespaceMachine();
+      if (srcPos.lineNum >= end)
+        break;
+      lexed.add(nextToken());
+    }
+    // leave srcPos where lexing the whole source would have
+    srcPos.lineNum = source.getNumLines();
+    srcPos.charInLineNum = 0;
+
+    // token positions are where each token ends, which is always on the line it started on
+    int first = firstTokenOnOrAfter(from);
+    int last = firstTokenOnOrAfter(to);
+    tokens.subList(first, last).clear();
+    tokens.addAll(first, lexed);
+    int lineDelta = lines.length - (to - from);
+    if (lineDelta != 0)
+      for (int i = first + lexed.size(); i < tokens.size(); i++)
+        tokens.get(i).position.lineNum += lineDelta;
+  }
+
+  /**
+   * Takes the whole new source, as an editor would resubmit it, and relexes only the lines between
+   * the unchanged prefix and suffix it shares with the current source
+   */
+  public void relex(String[] newSource) {
+    int oldCount = source.getNumLines();
+    int prefix = 0;
+    while (prefix < oldCount && prefix < newSource.length && sameLine(prefix, newSource[prefix]))
+      prefix++;
+    int suffix = 0;
+    while (suffix < oldCount - prefix && suffix < newSource.length - prefix
+        && sameLine(oldCount - 1 - suffix, newSource[newSource.length - 1 - suffix]))
+      suffix++;
+    if (prefix == oldCount && prefix == newSource.length)
+      return;
+    relex(prefix, oldCount - suffix,
+        Arrays.copyOfRange(newSource, prefix, newSource.length - suffix));
+  }
+
+  /**
+   * @return true if the stored line is what line would be stored as
+   */
+  private boolean sameLine(int number, String line) {
+    return source.lineEquals(number, line, Math.min(MAX_LINE_LENGTH, line.length()));
+  }
+
+  /**
+   * @return index of the first token whose position is on or after the given line
+   */
+  private int firstTokenOnOrAfter(int line) {
+    int low = 0;
+    int high = tokens.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (tokens.get(mid).position.lineNum < line)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
   private boolean isWhiteSpace(char c) {
     if (c == ' ' || c == '\t' || c == '\n')
       return true;
@@ -156,25 +606,29 @@ public class Lexar {
     }
 
     // if (hasConsumedWhitespace) {
-    String candidate = "";
+    int start = source.getLineStart(srcPos.lineNum) + srcPos.charInLineNum;
+    int length = 0;
 
     // next consume one letter
     if (source.hasNext(srcPos) && isLetter(source.peek(srcPos))) {
-      candidate += source.advanceChar(srcPos);
+      source.advanceChar(srcPos);
+      length++;
 
       // next consume any following letters or digits
       while (source.hasNext(srcPos)
           && (isLetter(source.peek(srcPos)) || isDigit(source.peek(srcPos)))) {
-        candidate += source.advanceChar(srcPos);
+        source.advanceChar(srcPos);
+        length++;
       }
 
       // if candidate is followed by whitespace or EOF
       // if (source.hasNext(srcPos)
       // && (isWhiteSpace(source.peek(srcPos)) || isEOF(source.peek(srcPos)))) {
 
-      // check reserved word table
-      if (reservedWordTable.containsKey(candidate)) {
-        Token result = reservedWordTable.get(candidate).clone();
+      // check reserved word table, straight from the buffer since tokens never span lines
+      Token reserved = reservedWords.lookup(source, start, length);
+      if (reserved != null) {
+        Token result = reserved.clone();
         result.position = srcPos.clone();
         return result;
       }
@@ -207,8 +661,7 @@ public class Lexar {
 
       // Check add id to symbol table
       Token t = new Token(TokType.ID, candidate, candidate, srcPos);
-      if (!symbols.table.containsKey(candidate))
-        symbols.table.put(candidate, t);
+      t.symbol = symbols.intern(candidate);
       return t;
     }
 
@@ -414,6 +867,301 @@ public class Lexar {
     return err;
   }
 
+  // result of the last scan(), see tableMachine() and storeMachine()
+  private TokType scanType;
+  private int scanAttr;
+  private String scanMessage;
+  private Token scanReserved;
+  private int scanStart;
+  private int scanEnd;
+
+  /**
+   * Single pass equivalent of reservedWordsMachine through catchAllMachine. Walks ScanTable until no
+   * transition exists, then applies the same checks those machines do to the scanned lexeme. Only
+   * the real number rules may back off, and only to the end of yy. Leaves srcPos after the token
+   * and describes it in the scan fields without building any objects.
+   */
+  private void scan() {
+    int base = source.getLineStart(srcPos.lineNum);
+    int lineEnd = base + source.getLineLength(srcPos.lineNum);
+    int start = base + srcPos.charInLineNum;
+    int end = start;
+    int dot = -1;
+    int exp = -1;
+    int state = ScanTable.S_START;
+
+    while (end < lineEnd) {
+      int next = ScanTable.next(state, source.charAt(end));
+      if (next == ScanTable.S_NONE)
+        break;
+      if (next == ScanTable.S_INT_DOT)
+        dot = end;
+      else if (next == ScanTable.S_EXP)
+        exp = end;
+      state = next;
+      end++;
+    }
+
+    scanStart = start;
+    scanAttr = -1;
+    scanMessage = null;
+    scanReserved = null;
+
+    switch (state) {
+      case ScanTable.S_ID:
+        scanEnd = end;
+        scanReserved = reservedWords.lookup(source, start, end - start);
+        if (scanReserved != null)
+          scanType = scanReserved.type;
+        else if (end - start > 10)
+          lexError("Invalid ID: too long");
+        else
+          scanType = TokType.ID;
+        break;
+      case ScanTable.S_INT_DOT:
+      case ScanTable.S_INT:
+        scanEnd = (state == ScanTable.S_INT_DOT) ? dot : end;
+        if (hasLeadingZeros(start, scanEnd))
+          lexError("Invalid INT: leading zeros");
+        else if (scanEnd - start > 10)
+          lexError("Invalid INT: too long");
+        else
+          scanType = TokType.NUM;
+        break;
+      case ScanTable.S_FRAC:
+      case ScanTable.S_EXP:
+      case ScanTable.S_EXP_SIGN:
+      case ScanTable.S_EXP_DIGITS:
+        int yyEnd = (exp >= 0) ? exp : end;
+        scanEnd = end;
+        scanType = TokType.NUM;
+        if (hasLeadingZeros(start, dot))
+          lexError("Invalid REAL: leading zeros in xx");
+        else if (dot - start > 5)
+          lexError("Invalid REAL: xx too long");
+        else if (hasTrailingZeros(dot + 1, yyEnd))
+          lexError("Invalid REAL: trailing zeros in yy");
+        else if (yyEnd - (dot + 1) > 5)
+          lexError("Invalid REAL: yy too long");
+        else if (state == ScanTable.S_EXP_DIGITS) {
+          int zzStart = (isDigit(source.charAt(exp + 1))) ? exp + 1 : exp + 2;
+          if (end - zzStart > 2)
+            lexError("Invalid REAL: zz too long");
+          else if (hasLeadingZeros(zzStart, end))
+            lexError("Invalid REAL: leading zeros in zz");
+        } else {
+          scanEnd = yyEnd;
+        }
+        break;
+      default:
+        scanEnd = end;
+        symbolToken(state, source.charAt(start));
+    }
+
+    moveTo(scanEnd - base);
+  }
+
+  private void lexError(String message) {
+    scanType = TokType.LEXERR;
+    scanMessage = message;
+  }
+
+  private void symbolToken(int state, char first) {
+    switch (state) {
+      case ScanTable.S_EQ:
+        scanType = TokType.RELOP;
+        scanAttr = RelopAttr.EQ.ordinal();
+        return;
+      case ScanTable.S_LT_GT:
+        scanType = TokType.RELOP;
+        scanAttr = RelopAttr.NEQ.ordinal();
+        return;
+      case ScanTable.S_LT_EQ:
+        scanType = TokType.RELOP;
+        scanAttr = RelopAttr.LTE.ordinal();
+        return;
+      case ScanTable.S_LT:
+        scanType = TokType.RELOP;
+        scanAttr = RelopAttr.LT.ordinal();
+        return;
+      case ScanTable.S_GT_EQ:
+        scanType = TokType.RELOP;
+        scanAttr = RelopAttr.GTE.ordinal();
+        return;
+      case ScanTable.S_GT:
+        scanType = TokType.RELOP;
+        scanAttr = RelopAttr.GT.ordinal();
+        return;
+      case ScanTable.S_ASSIGN:
+        scanType = TokType.ASSIGNOP;
+        return;
+      case ScanTable.S_COLON:
+        scanType = TokType.COLON;
+        return;
+      case ScanTable.S_DOTDOT:
+        scanType = TokType.DOTDOT;
+        return;
+      case ScanTable.S_DOT:
+        scanType = TokType.DOT;
+        return;
+      case ScanTable.S_PUNCT:
+        switch (first) {
+          case '(':
+            scanType = TokType.OPENPAREN;
+            return;
+          case ')':
+            scanType = TokType.CLOSEPAREN;
+            return;
+          case ';':
+            scanType = TokType.SEMICOLON;
+            return;
+          case ',':
+            scanType = TokType.COMMA;
+            return;
+          case '[':
+            scanType = TokType.OPENBRACKET;
+            return;
+          case ']':
+            scanType = TokType.CLOSEBRACKET;
+            return;
+          case '+':
+            scanType = TokType.ADDOP;
+            scanAttr = AddopAttr.PLUS.ordinal();
+            return;
+          case '-':
+            scanType = TokType.ADDOP;
+            scanAttr = AddopAttr.MINUS.ordinal();
+            return;
+          case '*':
+            scanType = TokType.MULOP;
+            scanAttr = MulopAttr.TIMES.ordinal();
+            return;
+          case '/':
+            scanType = TokType.MULOP;
+            scanAttr = MulopAttr.SLASH.ordinal();
+            return;
+        }
+    }
+    lexError("Unrecog Symbol");
+  }
+
+  /**
+   * same as hasLeadingZeros(String) over an absolute source range
+   */
+  private boolean hasLeadingZeros(int from, int to) {
+    return to - from > 1 && source.charAt(from) == '0';
+  }
+
+  /**
+   * same as hasTrailingZeros(String) over an absolute source range
+   */
+  private boolean hasTrailingZeros(int from, int to) {
+    return to - from > 1 && source.charAt(to - 1) == '0';
+  }
+
+  private Token tableMachine() {
+    scan();
+    String lex = source.substring(scanStart, scanEnd);
+
+    if (scanReserved != null) {
+      Token result = scanReserved.clone();
+      result.position = srcPos.clone();
+      return result;
+    }
+    switch (scanType) {
+      case LEXERR:
+        return new Token(TokType.LEXERR, scanMessage, lex, srcPos);
+      case ID:
+        Token t = new Token(TokType.ID, lex, lex, srcPos);
+        t.symbol = symbols.intern(source, scanStart, scanEnd - scanStart);
+        return t;
+      case NUM:
+        return new Token(TokType.NUM, lex, lex, srcPos);
+      case RELOP:
+      case ADDOP:
+      case MULOP:
+        return new Token(scanType, scanAttr, lex, srcPos);
+      default:
+        return new Token(scanType, null, lex, srcPos);
+    }
+  }
+
+  /**
+   * table driven scan of the next token straight into a TokenStore
+   */
+  private void storeMachine(TokenStore store) {
+    scan();
+    int line = srcPos.lineNum;
+    int col = srcPos.charInLineNum;
+    int length = scanEnd - scanStart;
+
+    if (scanReserved != null) {
+      store.addFixed(scanType, (int) scanReserved.attribute, line, col, scanReserved.lexeme);
+      return;
+    }
+    switch (scanType) {
+      case LEXERR:
+        store.addError(scanMessage, line, col, scanStart, length);
+        return;
+      case ID:
+        store.add(TokType.ID, symbols.intern(source, scanStart, length), line, col, scanStart,
+            length);
+        return;
+      case NUM:
+        store.add(TokType.NUM, TokenStore.ATTR_LEXEME, line, col, scanStart, length);
+        return;
+      default:
+        store.add(scanType, scanAttr, line, col, scanStart, length);
+    }
+  }
+
+  /**
+   * Lexes the whole source into a TokenStore, ending with the $ token. Always table driven, and
+   * produces the same tokens getNextToken() would.
+   */
+  public TokenStore lexAll() {
+    TokenStore store = new TokenStore(source);
+    lexInto(store, Integer.MAX_VALUE);
+    return store;
+  }
+
+  /**
+   * Lexes up to max more tokens into store, stopping after the $ token. Always table driven, and
+   * produces the same tokens getNextToken() would, but as primitive columns and without keeping
+   * them for getTokenList().
+   *
+   * @return how many tokens were added
+   */
+  public int lexInto(TokenStore store, int max) {
+    long start = (metrics != null) ? System.nanoTime() : 0;
+    int n = 0;
+    while (n < max) {
+      n++;
+      whitespaceMachine();
+      if (!source.hasNext(srcPos)) {
+        store.add(eofMachine());
+        break;
+      }
+      storeMachine(store);
+    }
+    if (metrics != null)
+      metrics.lexed(System.nanoTime() - start, n);
+    return n;
+  }
+
+  /**
+   * moves srcPos to the given char of the current line, following SourceBuffer.advanceChar's rule
+   * of rolling onto the next line once past the last char
+   */
+  private void moveTo(int charInLine) {
+    if (charInLine < source.getLineLength(srcPos.lineNum)) {
+      srcPos.charInLineNum = charInLine;
+    } else {
+      srcPos.lineNum++;
+      srcPos.charInLineNum = 0;
+    }
+  }
+
   public void computeProjectZero() {
     for (int i = 0; i < source.getNumLines(); i++) {
       out.print(i + ". " + source.getLine(i));
@@ -429,10 +1177,32 @@ public class Lexar {
     }
   }
 
+  public static ByteBuffer mapFile(String filepath) {
+    try {
+      RandomAccessFile file = new RandomAccessFile(filepath, "r");
+      try {
+        FileChannel channel = file.getChannel();
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } finally {
+        file.close();
+      }
+    } catch (FileNotFoundException e) {
+      out.println("Source not found at " + filepath);
+      return null;
+    } catch (IOException e) {
+      out.println("Source could not be mapped at " + filepath);
+      return null;
+    }
+  }
+
   public ArrayList<Token> getTokenList() {
     return tokens;
   }
 
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
   public SourceBuffer getSourceBuffer() {
     return source;
   }
@@ -0,0 +1,366 @@
+package kuxhausen;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import kuxhausen.Token.TokType;
+
+/**
+ * @author Eric Kuxhausen Per file timings and counts for each phase of a compile. Lexar opening
+ *         counts as load, token production as lex, Parser and DecoratedParser as parse and Utils or
+ *         StreamingWriter as write. Phases that run inside another, like lexing on demand while
+ *         parsing, are taken out of the outer phase's time so the phases add up to the whole
+ *         compile. Each thread records into the file it is compiling, so parallel batches and the
+ *         compile server keep files apart. Reports are JSON or Prometheus text. Everything here is
+ *         skipped unless enabled.
+ */
+public class Metrics {
+
+  /**
+   * when set (-Dkuxhausen.metrics=base) the drivers record metrics and write base.json and
+   * base.prom when done
+   */
+  public static final String REPORT = System.getProperty("kuxhausen.metrics");
+
+  public static final boolean ENABLED = REPORT != null;
+
+  public static enum Phase {
+    LOAD, LEX, PARSE, WRITE
+  }
+
+  /**
+   * metrics of one compile of one file
+   */
+  public static class FileMetrics {
+    final String driver;
+    final String file;
+    final long[] nanos = new long[Phase.values().length];
+    long total;
+    long tokens;
+    long lines;
+    boolean cached;
+    final long[] errors = new long[TokType.values().length];
+
+    /**
+     * time recorded by every phase so far, for taking nested phases out of outer ones
+     */
+    private long recorded;
+
+    FileMetrics(String driver, String file) {
+      this.driver = driver;
+      this.file = file;
+    }
+
+    private void add(Phase phase, long elapsed) {
+      nanos[phase.ordinal()] += elapsed;
+      recorded += elapsed;
+    }
+
+    /**
+     * count tokens produced in the given time
+     */
+    void lexed(long elapsed, int count) {
+      add(Phase.LEX, elapsed);
+      tokens += count;
+    }
+  }
+
+  /**
+   * Times one phase, less whatever nested phases record before it stops. Obtained from start().
+   */
+  public static class Timer {
+    private FileMetrics metrics;
+    private Phase phase;
+    private long start;
+    private long recordedAtStart;
+
+    private Timer(FileMetrics metrics, Phase phase) {
+      this.metrics = metrics;
+      this.phase = phase;
+      recordedAtStart = metrics.recorded;
+      start = System.nanoTime();
+    }
+
+    private Timer() {}
+
+    public void stop() {
+      if (metrics != null) {
+        long elapsed = System.nanoTime() - start;
+        metrics.add(phase, elapsed - (metrics.recorded - recordedAtStart));
+      }
+    }
+  }
+
+  private static final Timer NONE = new Timer();
+
+  private static final ThreadLocal<FileMetrics> CURRENT = new ThreadLocal<FileMetrics>();
+
+  /**
+   * files kept for reports, the oldest being dropped past this so a long running CompileServer
+   * doesn't grow without bound
+   */
+  private static final int MAX_FILES = 4096;
+
+  /**
+   * latest metrics for each driver and file, least recently compiled first
+   */
+  private static final LinkedHashMap<String, FileMetrics> FILES =
+      new LinkedHashMap<String, FileMetrics>() {
+        protected boolean removeEldestEntry(Map.Entry<String, FileMetrics> eldest) {
+          return size() > MAX_FILES;
+        }
+      };
+
+  /**
+   * @return the file this thread is compiling, or null if none or not enabled
+   */
+  public static FileMetrics current() {
+    return ENABLED ? CURRENT.get() : null;
+  }
+
+  public static Timer start(Phase phase) {
+    FileMetrics metrics = current();
+    return (metrics != null) ? new Timer(metrics, phase) : NONE;
+  }
+
+  /**
+   * counts source lines and the error token t as they are listed, see Utils.writeListingEntry
+   */
+  static void listed(int lines, Token t) {
+    FileMetrics metrics = current();
+    if (metrics == null)
+      return;
+    metrics.lines += lines;
+    if (t.type == TokType.LEXERR || t.type == TokType.SYNTAXERR || t.type == TokType.SEMANTICERR)
+      metrics.errors[t.type.ordinal()]++;
+  }
+
+  /**
+   * notes that the current file's results came from the CompileCache
+   */
+  public static void cacheHit() {
+    FileMetrics metrics = current();
+    if (metrics != null)
+      metrics.cached = true;
+  }
+
+  /**
+   * records the compile job does for file under driver on this thread
+   */
+  public static void record(String driver, String file, Batch.Job job, String filename) {
+    if (!ENABLED) {
+      job.compile(filename);
+      return;
+    }
+    FileMetrics metrics = new FileMetrics(driver, file);
+    CURRENT.set(metrics);
+    long start = System.nanoTime();
+    try {
+      job.compile(filename);
+    } finally {
+      metrics.total = System.nanoTime() - start;
+      CURRENT.remove();
+      synchronized (FILES) {
+        String key = driver + " " + file;
+        FILES.remove(key);
+        FILES.put(key, metrics);
+      }
+    }
+  }
+
+  /**
+   * @return job unchanged if metrics are off, otherwise a job that records each file it compiles
+   */
+  public static Batch.Job wrap(final String driver, final Batch.Job job) {
+    if (!ENABLED)
+      return job;
+    return new Batch.Job() {
+      public void compile(String filename) {
+        record(driver, "input/" + filename + ".pas", job, filename);
+      }
+    };
+  }
+
+  /**
+   * forgets every file recorded so far
+   */
+  public static void clear() {
+    synchronized (FILES) {
+      FILES.clear();
+    }
+  }
+
+  private static ArrayList<FileMetrics> files() {
+    synchronized (FILES) {
+      return new ArrayList<FileMetrics>(FILES.values());
+    }
+  }
+
+  /**
+   * writes REPORT.json and REPORT.prom, if enabled
+   */
+  public static void writeReport() {
+    if (!ENABLED)
+      return;
+    try {
+      PrintWriter json = new PrintWriter(REPORT + ".json");
+      json.print(toJson());
+      json.close();
+      PrintWriter prometheus = new PrintWriter(REPORT + ".prom");
+      prometheus.print(toPrometheus());
+      prometheus.close();
+    } catch (FileNotFoundException e) {
+      System.out.println("metrics could not be written to " + REPORT);
+    }
+  }
+
+  private static String name(Phase phase) {
+    return phase.toString().toLowerCase(Locale.ROOT);
+  }
+
+  private static double seconds(long nanos) {
+    return nanos / 1e9;
+  }
+
+  private static double rate(long count, long nanos) {
+    return (nanos > 0) ? count / seconds(nanos) : 0;
+  }
+
+  private static String number(double d) {
+    return String.format(Locale.ROOT, "%.6f", d);
+  }
+
+  private static String quote(String s) {
+    StringBuilder result = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\')
+        result.append('\\').append(c);
+      else if (c < 0x20)
+        result.append(String.format("\\u%04x", (int) c));
+      else
+        result.append(c);
+    }
+    return result.append('"').toString();
+  }
+
+  /**
+   * @return every file's metrics as a JSON document
+   */
+  public static String toJson() {
+    StringBuilder out = new StringBuilder("{\n  \"files\": [");
+    String separator = "\n";
+    for (FileMetrics m : files()) {
+      out.append(separator);
+      separator = ",\n";
+      out.append("    {\"driver\": ").append(quote(m.driver));
+      out.append(", \"file\": ").append(quote(m.file));
+      out.append(", \"cached\": ").append(m.cached);
+      out.append(", \"seconds\": ").append(number(seconds(m.total)));
+      out.append(", \"tokens\": ").append(m.tokens);
+      out.append(", \"lines\": ").append(m.lines);
+      out.append(", \"tokensPerSecond\": ").append(number(rate(m.tokens, m.total)));
+      out.append(", \"linesPerSecond\": ").append(number(rate(m.lines, m.total)));
+      out.append(",\n     \"errors\": {");
+      String comma = "";
+      for (TokType type : new TokType[] {TokType.LEXERR, TokType.SYNTAXERR, TokType.SEMANTICERR}) {
+        out.append(comma).append(quote(type.toString())).append(": ")
+            .append(m.errors[type.ordinal()]);
+        comma = ", ";
+      }
+      out.append("},\n     \"phases\": {");
+      comma = "";
+      for (Phase phase : Phase.values()) {
+        long nanos = m.nanos[phase.ordinal()];
+        out.append(comma).append(quote(name(phase))).append(": {\"seconds\": ")
+            .append(number(seconds(nanos))).append(", \"tokensPerSecond\": ")
+            .append(number(rate(m.tokens, nanos))).append(", \"linesPerSecond\": ")
+            .append(number(rate(m.lines, nanos))).append("}");
+        comma = ", ";
+      }
+      out.append("}}");
+    }
+    out.append("\n  ]\n}\n");
+    return out.toString();
+  }
+
+  /**
+   * @return every file's metrics in the Prometheus text exposition format
+   */
+  public static String toPrometheus() {
+    ArrayList<FileMetrics> files = files();
+    StringBuilder out = new StringBuilder();
+    out.append("# HELP kuxhausen_phase_seconds Time spent in each phase of the latest compile.\n");
+    out.append("# TYPE kuxhausen_phase_seconds gauge\n");
+    for (FileMetrics m : files)
+      for (Phase phase : Phase.values())
+        out.append("kuxhausen_phase_seconds").append(labels(m, "phase", name(phase))).append(' ')
+            .append(number(seconds(m.nanos[phase.ordinal()]))).append('\n');
+    int n = files.size();
+    String[] compile = new String[n], tokens = new String[n], lines = new String[n];
+    String[] tokenRate = new String[n], lineRate = new String[n], cached = new String[n];
+    for (int i = 0; i < n; i++) {
+      FileMetrics m = files.get(i);
+      compile[i] = number(seconds(m.total));
+      tokens[i] = Long.toString(m.tokens);
+      lines[i] = Long.toString(m.lines);
+      tokenRate[i] = number(rate(m.tokens, m.nanos[Phase.LEX.ordinal()]));
+      lineRate[i] = number(rate(m.lines, m.total));
+      cached[i] = m.cached ? "1" : "0";
+    }
+    gauge(out, files, "kuxhausen_compile_seconds", "Wall time of the latest compile.", compile);
+    gauge(out, files, "kuxhausen_tokens", "Tokens lexed by the latest compile.", tokens);
+    gauge(out, files, "kuxhausen_lines", "Source lines listed by the latest compile.", lines);
+    gauge(out, files, "kuxhausen_tokens_per_second", "Tokens over lex time.", tokenRate);
+    gauge(out, files, "kuxhausen_lines_per_second", "Lines over the whole compile.", lineRate);
+    gauge(out, files, "kuxhausen_cached", "1 if the latest compile was a cache hit.", cached);
+    out.append("# HELP kuxhausen_errors Errors listed by the latest compile.\n");
+    out.append("# TYPE kuxhausen_errors gauge\n");
+    for (FileMetrics m : files)
+      for (TokType type : new TokType[] {TokType.LEXERR, TokType.SYNTAXERR, TokType.SEMANTICERR})
+        out.append("kuxhausen_errors").append(labels(m, "type", type.toString())).append(' ')
+            .append(m.errors[type.ordinal()]).append('\n');
+    return out.toString();
+  }
+
+  /**
+   * appends one gauge with values[i] for files[i]
+   */
+  private static void gauge(StringBuilder out, ArrayList<FileMetrics> files, String name,
+      String help, String[] values) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(" gauge\n");
+    for (int i = 0; i < values.length; i++)
+      out.append(name).append(labels(files.get(i), null, null)).append(' ').append(values[i])
+          .append('\n');
+  }
+
+  private static String labels(FileMetrics m, String extra, String value) {
+    StringBuilder out = new StringBuilder("{driver=").append(labelValue(m.driver));
+    out.append(",file=").append(labelValue(m.file));
+    if (extra != null)
+      out.append(',').append(extra).append('=').append(labelValue(value));
+    return out.append('}').toString();
+  }
+
+  /**
+   * quotes s as a Prometheus label value, which only allows \\, \" and \n as escapes
+   */
+  private static String labelValue(String s) {
+    StringBuilder result = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\')
+        result.append('\\').append(c);
+      else if (c == '\n')
+        result.append("\\n");
+      else
+        result.append(c);
+    }
+    return result.append('"').toString();
+  }
+}
@@ -2,7 +2,10 @@ package kuxhausen;
 
 public interface Node {
 
-  abstract String getName();
+  /**
+   * @return the SymbolTable id of this node's name
+   */
+  abstract int getSymbol();
 
-  abstract void setName(String name);
+  abstract void setSymbol(int symbol);
 }
@@ -1,11 +1,14 @@
 package kuxhausen;
 
 public class PPPair {
-  String procName;
+  /**
+   * parameter types of the procedure being called, see GreenNode.getSignature()
+   */
+  PasType[] signature;
   int paramNum;
 
-  PPPair(String p, int n) {
-    procName = p;
+  PPPair(PasType[] s, int n) {
+    signature = s;
     paramNum = n;
   }
 }
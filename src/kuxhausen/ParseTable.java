@@ -0,0 +1,223 @@
+package kuxhausen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.TreeSet;
+
+import kuxhausen.Token.AddopAttr;
+import kuxhausen.Token.ResWordAttr;
+import kuxhausen.Token.TokType;
+
+/**
+ * @author Eric Kuxhausen The LL(1) parse table for TableParser, built from the FIRST and FOLLOW sets
+ *         of the grammar in doc/ once per JVM. Rows are nonterminals and columns are SyncSet bits,
+ *         so a token is looked up with one array index. Where a nonterminal's e production and
+ *         another production want the same column the other production wins, which binds a
+ *         dangling else to the nearest if as Parser does. Any other conflict means the grammar
+ *         isn't LL(1) and fails the build.
+ */
+public class ParseTable {
+
+  /**
+   * spellings of the grammar's terminals in the order expected tokens are listed in: reserved
+   * words by attribute, then the columns of doc/ParseTable.xlsx
+   */
+  private static final String[] TERMINALS = {"program", "var", "array", "of", "integer", "real",
+      "procedure", "begin", "end", "if", "then", "else", "while", "do", "call", "not", "(", ")",
+      ";", ".", ",", ":", "[", "..", "]", "assignop", "+", "-", "id", "num", "relop", "addop",
+      "mulop"};
+
+  private static ParseTable shared;
+
+  public static synchronized ParseTable getShared() {
+    if (shared == null) {
+      try {
+        shared = new ParseTable(new Grammar(Grammar.PATH));
+      } catch (IOException e) {
+        throw new IllegalStateException("can't read grammar " + Grammar.PATH, e);
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * symbol to expand first
+   */
+  final int start;
+
+  /**
+   * right hand side of each production, nonterminals as their row and terminals t as -1 - t
+   */
+  final int[][] rhs;
+
+  /**
+   * production for each row and column, or -1 for an error
+   */
+  final int[] table;
+
+  /**
+   * sync set and expected tokens of each row
+   */
+  final SyncSet[] sync;
+  final Token[][] expected;
+
+  /**
+   * type and attribute of each terminal, the attribute being -1 for any
+   */
+  final TokType[] termType;
+  final int[] termAttr;
+
+  /**
+   * expected tokens when a terminal doesn't match
+   */
+  final Token[][] termExpected;
+
+  ParseTable(Grammar g) {
+    ArrayList<String> nonterminals = new ArrayList<String>(g.getNonterminals());
+    HashMap<String, Integer> rows = new HashMap<String, Integer>();
+    for (String nt : nonterminals)
+      rows.put(nt, rows.size());
+    HashMap<String, Integer> terminals = new HashMap<String, Integer>();
+    for (String t : TERMINALS)
+      terminals.put(t, terminals.size());
+
+    termType = new TokType[TERMINALS.length];
+    termAttr = new int[TERMINALS.length];
+    termExpected = new Token[TERMINALS.length][];
+    for (int t = 0; t < TERMINALS.length; t++) {
+      Token pair = pair(TERMINALS[t]);
+      termType[t] = pair.type;
+      termAttr[t] = (int) pair.attribute;
+      termExpected[t] = new Token[] {pair};
+    }
+
+    int columns = SyncSet.SIZE;
+    start = rows.get(g.getStart());
+    table = new int[nonterminals.size() * columns];
+    Arrays.fill(table, -1);
+    sync = new SyncSet[nonterminals.size()];
+    expected = new Token[nonterminals.size()][];
+    ArrayList<int[]> productions = new ArrayList<int[]>();
+
+    for (int row = 0; row < nonterminals.size(); row++) {
+      String lhs = nonterminals.get(row);
+      sync[row] = SyncSet.forNonterminal(lhs);
+      TreeSet<Integer> wanted = new TreeSet<Integer>();
+
+      for (String[] symbols : g.getProductions(lhs)) {
+        int production = productions.size();
+        int[] encoded = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+          if (g.isNonterminal(symbols[i]))
+            encoded[i] = rows.get(symbols[i]);
+          else
+            encoded[i] = -1 - terminal(terminals, symbols[i]);
+        }
+        productions.add(encoded);
+
+        LinkedHashSet<String> lookahead = g.first(symbols, 0);
+        if (lookahead.remove(Grammar.EPSILON))
+          lookahead.addAll(g.getFollow(lhs));
+        for (String s : lookahead) {
+          if (s.equals(Grammar.END)) {
+            put(row, SyncSet.bit(TokType.$, -1), production, productions, lhs, s);
+            continue;
+          }
+          int t = terminal(terminals, s);
+          wanted.add(t);
+          if (termAttr[t] < 0) {
+            int first = SyncSet.bit(termType[t], -1);
+            for (int b = 0; b < SyncSet.attributeCount(termType[t]); b++)
+              put(row, first + b, production, productions, lhs, s);
+          } else {
+            put(row, SyncSet.bit(termType[t], termAttr[t]), production, productions, lhs, s);
+          }
+        }
+      }
+
+      ArrayList<Token> list = new ArrayList<Token>();
+      for (int t : wanted)
+        list.add(termExpected[t][0]);
+      // Parser lists [ after the rest of FACTOR^, keep its messages the same
+      if (lhs.equals("FACTOR^"))
+        list.add(list.remove(wanted.headSet(terminals.get("[")).size()));
+      expected[row] = list.toArray(new Token[list.size()]);
+    }
+    rhs = productions.toArray(new int[productions.size()][]);
+  }
+
+  private void put(int row, int column, int production, ArrayList<int[]> productions, String lhs,
+      String terminal) {
+    int index = row * SyncSet.SIZE + column;
+    int existing = table[index];
+    if (existing < 0 || existing == production || productions.get(existing).length == 0)
+      table[index] = production;
+    else if (productions.get(production).length != 0)
+      throw new IllegalStateException("grammar isn't LL(1), " + lhs + " has two productions for "
+          + terminal);
+  }
+
+  private static int terminal(HashMap<String, Integer> terminals, String spelling) {
+    Integer t = terminals.get(spelling);
+    if (t == null)
+      throw new IllegalStateException("no token for grammar terminal " + spelling);
+    return t;
+  }
+
+  /**
+   * @return the (TokType, attribute) a terminal of the grammar stands for
+   */
+  private static Token pair(String terminal) {
+    switch (terminal) {
+      case "integer":
+        return pair(TokType.RESWRD, ResWordAttr.INT_NAME);
+      case "real":
+        return pair(TokType.RESWRD, ResWordAttr.REAL_NAME);
+      case "procedure":
+        return pair(TokType.RESWRD, ResWordAttr.PROC);
+      case "(":
+        return pair(TokType.OPENPAREN, null);
+      case ")":
+        return pair(TokType.CLOSEPAREN, null);
+      case ";":
+        return pair(TokType.SEMICOLON, null);
+      case ".":
+        return pair(TokType.DOT, null);
+      case ",":
+        return pair(TokType.COMMA, null);
+      case ":":
+        return pair(TokType.COLON, null);
+      case "[":
+        return pair(TokType.OPENBRACKET, null);
+      case "..":
+        return pair(TokType.DOTDOT, null);
+      case "]":
+        return pair(TokType.CLOSEBRACKET, null);
+      case "assignop":
+        return pair(TokType.ASSIGNOP, null);
+      case "+":
+        return pair(TokType.ADDOP, AddopAttr.PLUS);
+      case "-":
+        return pair(TokType.ADDOP, AddopAttr.MINUS);
+      case "id":
+        return pair(TokType.ID, null);
+      case "num":
+        return pair(TokType.NUM, null);
+      case "relop":
+        return pair(TokType.RELOP, null);
+      case "addop":
+        return pair(TokType.ADDOP, null);
+      case "mulop":
+        return pair(TokType.MULOP, null);
+      default:
+        return pair(TokType.RESWRD, ResWordAttr.valueOf(terminal.toUpperCase()));
+    }
+  }
+
+  private static Token pair(TokType type, Enum<?> attr) {
+    return new Token(type, (attr != null) ? attr.ordinal() : -1, null, null);
+  }
+}
@@ -1,6 +1,9 @@
 package kuxhausen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import kuxhausen.Token.ResWordAttr;
 import kuxhausen.Token.TokType;
@@ -11,62 +14,189 @@ import kuxhausen.Token.*;
  */
 public class Parser {
 
+  /**
+   * when set (-Dkuxhausen.speculative=true) top level procedures are parsed ahead on the Workers
+   * pool, see speculate(). Streaming parses and TableParser parse as usual. DecoratedParser
+   * doesn't speculate, since parsing a procedure there declares its names into scopes shared with
+   * the rest of the program and writes their memory offsets to the .loc file in source order.
+   * Its procedure bodies are checked in parallel by -Dkuxhausen.twoPhase instead.
+   */
+  public static final boolean SPECULATIVE = Boolean.getBoolean("kuxhausen.speculative");
+
   private Lexar mL;
 
+  /**
+   * tokens taken from mL a block at a time, and the next one to hand out
+   */
+  private Token[] mBlock;
+  private int mBlockNext;
+  private int mBlockSize;
+
   /**
    * current Token
    */
-  private Token mT;
+  Token mT;
   private SourcePointer mLine;
 
   /**
    * sync set for the current nonTerminal
    */
-  private Token[] mSet;
+  SyncSet mSet;
 
   private ArrayList<Token> mTokens = new ArrayList<Token>();
+  private StreamingWriter mOut;
+
+  /**
+   * set when parsing from a TokenStore, see Parser(TokenStore)
+   */
+  private TokenStore mLexed;
+  private TokenStore.Cursor mCursor;
+  private TokenStore mOutStore;
+  private Token mFlyweight;
+
+  /**
+   * when parsing speculatively from a Lexar, every token it produced and the index of the next
+   */
+  private ArrayList<Token> mReplay;
+  private int mReplayNext;
+
+  /**
+   * index of the first token of each procedure parsed ahead, the parse, and the task doing it
+   */
+  private int[] mAheadStarts;
+  private Parser[] mAhead;
+  private int[] mAheadTask;
+  private ArrayList<Future<Void>> mAheadTasks;
 
   Parser(Lexar lex) {
+    this(lex, null);
+  }
+
+  /**
+   * @param out if not null, tokens and errors are handed to it as they occur instead of being kept
+   *        for getTokenList()
+   */
+  Parser(Lexar lex, StreamingWriter out) {
+    mOut = out;
     mL = lex;
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+    try {
+      consumeToken();
+      parse();
+    } finally {
+      // a parse that throws mustn't leave a pipelined Lexar's thread waiting
+      mL.close();
+    }
+    timer.stop();
+  }
+
+  /**
+   * Parses tokens already lexed by Lexar.lexAll(). Tokens and errors are collected in
+   * getTokenStore() rather than getTokenList().
+   */
+  Parser(TokenStore lexed) {
+    mLexed = lexed;
+    mCursor = lexed.cursor();
+    mOutStore = new TokenStore(lexed.getSourceBuffer());
+    mFlyweight = new Token(TokType.$, null, null, new SourcePointer());
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
     consumeToken();
+    parse();
+    timer.stop();
+  }
+
+  /**
+   * parses the whole token stream, overridden by TableParser
+   */
+  void parse() {
+    if (SPECULATIVE && mOut == null)
+      speculate();
     program();
   }
 
-  private void consumeToken() {
+  void consumeToken() {
     if (mT != null && mT.type == TokType.$)
       return;
-    Token next = mL.getNextToken();
+    if (mReplay != null) {
+      mT = mReplay.get(mReplayNext++);
+      emit(mT);
+      mLine = mT.position;
+      return;
+    }
+    if (mCursor != null) {
+      // nothing holds on to mT past the next consume, so one Token is reused throughout
+      mCursor.next();
+      mT = mCursor.load(mFlyweight);
+      mOutStore.copy(mLexed, mCursor.index());
+      mLine = mT.position;
+      return;
+    }
+    Token next = nextLexed();
 
     mT = next;
-    mTokens.add(next);
+    emit(next);
     mLine = next.position;
   }
 
+  private void emit(Token t) {
+    if (mOutStore != null)
+      mOutStore.add(t);
+    else if (mOut != null)
+      mOut.add(t);
+    else
+      mTokens.add(t);
+  }
+
+  /**
+   * @return the next token from mL, taking another block once this one is used up
+   */
+  private Token nextLexed() {
+    if (mBlockNext == mBlockSize) {
+      if (mBlock == null)
+        mBlock = new Token[Lexar.BLOCK_SIZE];
+      mBlockSize = mL.getNextTokens(mBlock, 0, mBlock.length);
+      mBlockNext = 0;
+    }
+    return mBlock[mBlockNext++];
+  }
+
   public ArrayList<Token> getTokenList() {
     return mTokens;
   }
 
-  private class SyntaxErr extends Exception {
+  public TokenStore getTokenStore() {
+    return mOutStore;
   }
 
+  /**
+   * Unwinds from match() to the nonterminal that recovers. It carries nothing, so one instance
+   * without a stack trace is thrown every time.
+   */
+  private static class SyntaxErr extends Exception {
+    SyntaxErr() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final SyntaxErr SYNTAX_ERR = new SyntaxErr();
+
   Token pair(TokType type, Enum attr) {
     return new Token(type, (attr != null) ? attr.ordinal() : -1, null, null);
   }
 
   public void match(TokType type, Enum attr) throws SyntaxErr {
-    Token desired = pair(type, attr);
-    if (mT.fullTypeMatch(desired)) {
+    if (mT.typeMatch(type, (attr != null) ? attr.ordinal() : -1)) {
       consumeToken();
     } else {
       Token[] toks = {pair(type, attr)};
       wanted(toks);
-      throw new SyntaxErr();
+      throw SYNTAX_ERR;
     }
   }
 
-  private void wanted(Token[] wanted) {
+  void wanted(Token[] wanted) {
     String message = generateErrorMessage(wanted);
-    mTokens.add(new Token(TokType.SYNTAXERR, message, mT.lexeme, mT.position));
+    emit(new Token(TokType.SYNTAXERR, message, mT.lexeme, mT.position));
   }
 
   private String generateErrorMessage(Token[] tokens) {
@@ -79,22 +209,137 @@ public class Parser {
     return result;
   }
 
-  private void sync() {
-    while (mT.type != TokType.$ && !inSet(mSet)) {
+  void sync() {
+    while (mT.type != TokType.$ && !mSet.contains(mT)) {
       consumeToken();
     }
   }
 
-  private boolean inSet(Token[] syncSet) {
-    for (Token s : syncSet) {
-      if (mT.fullTypeMatch(s))
-        return true;
+  /**
+   * @return index of mT in the token stream
+   */
+  private int position() {
+    return (mCursor != null) ? mCursor.index() : mReplayNext - 1;
+  }
+
+  private boolean isReserved(int i, ResWordAttr attr) {
+    if (mCursor != null)
+      return mLexed.getType(i) == TokType.RESWRD && mLexed.getAttribute(i) == attr.ordinal();
+    Token t = mReplay.get(i);
+    return t.type == TokType.RESWRD && (int) t.attribute == attr.ordinal();
+  }
+
+  /**
+   * Finds where each top level procedure starts by matching procedure, begin and end, stopping at
+   * the program's own begin, and starts parsing them all on the Workers pool. A procedure's parse
+   * depends on nothing but the tokens from its first one on, since subprogramDeclaration() sets its
+   * own sync set. So whenever this parse reaches one of those tokens, takeAhead() uses the parse
+   * done ahead, which is exactly what parsing it here would give. Where errors make the scan guess
+   * wrong, this parse simply never reaches the guessed start and parses as usual.
+   */
+  private void speculate() {
+    if (mCursor == null) {
+      mReplay = new ArrayList<Token>();
+      mReplay.add(mT);
+      for (Token t = mT; t.type != TokType.$;) {
+        t = nextLexed();
+        mReplay.add(t);
+      }
+      mReplayNext = 1;
+    }
+    int size = (mCursor != null) ? mLexed.size() : mReplay.size();
+
+    ArrayList<Integer> starts = new ArrayList<Integer>();
+    int open = 0; // procedures whose body hasn't ended
+    int blocks = 0; // begin end nesting in the current body
+    int end = position();
+    for (; end < size; end++) {
+      if (isReserved(end, ResWordAttr.PROC)) {
+        if (open == 0 && blocks == 0)
+          starts.add(end);
+        open++;
+      } else if (isReserved(end, ResWordAttr.BEGIN)) {
+        if (open == 0 && blocks == 0)
+          break;
+        blocks++;
+      } else if (isReserved(end, ResWordAttr.END) && blocks > 0) {
+        if (--blocks == 0 && open > 0)
+          open--;
+      }
+    }
+    if (starts.size() < 2)
+      return;
+
+    mAheadStarts = new int[starts.size()];
+    long[] sizes = new long[starts.size()];
+    for (int k = 0; k < mAheadStarts.length; k++) {
+      mAheadStarts[k] = starts.get(k);
+      sizes[k] = ((k + 1 < starts.size()) ? starts.get(k + 1) : end) - starts.get(k);
+    }
+    mAhead = new Parser[mAheadStarts.length];
+    mAheadTask = new int[mAheadStarts.length];
+    mAheadTasks = new ArrayList<Future<Void>>();
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (final int[] run : Workers.group(sizes, threads * 4)) {
+      for (int k = run[0]; k < run[1]; k++)
+        mAheadTask[k] = mAheadTasks.size();
+      mAheadTasks.add(Workers.submit(new Callable<Void>() {
+        public Void call() {
+          for (int k = run[0]; k < run[1]; k++)
+            mAhead[k] = new Parser(Parser.this, mAheadStarts[k]);
+          return null;
+        }
+      }));
+    }
+  }
+
+  /**
+   * Parses the procedure whose first token is token start of whole's, for whole to take up
+   */
+  private Parser(Parser whole, int start) {
+    if (whole.mLexed != null) {
+      mLexed = whole.mLexed;
+      mCursor = mLexed.cursor(start);
+      mOutStore = new TokenStore(mLexed.getSourceBuffer());
+      mFlyweight = new Token(TokType.$, null, null, new SourcePointer());
+      mT = mCursor.load(mFlyweight);
+    } else {
+      mReplay = whole.mReplay;
+      mReplayNext = start + 1;
+      mT = mReplay.get(start);
+    }
+    mLine = mT.position;
+    subprogramDeclaration();
+  }
+
+  /**
+   * @return true if the procedure starting at mT was parsed ahead, in which case that parse's
+   *         output and final state are taken as this one's
+   */
+  private boolean takeAhead() {
+    int k = Arrays.binarySearch(mAheadStarts, position());
+    if (k < 0)
+      return false;
+    Workers.await(mAheadTasks.get(mAheadTask[k]));
+    Parser ahead = mAhead[k];
+    mAhead[k] = null;
+    if (mOutStore != null) {
+      for (int i = 0; i < ahead.mOutStore.size(); i++)
+        mOutStore.copy(ahead.mOutStore, i);
+      mCursor = mLexed.cursor(ahead.mCursor.index());
+      mT = mCursor.load(mFlyweight);
+    } else {
+      mTokens.addAll(ahead.mTokens);
+      mReplayNext = ahead.mReplayNext;
+      mT = ahead.mT;
     }
-    return false;
+    mLine = mT.position;
+    mSet = ahead.mSet;
+    return true;
   }
 
   void program() {
-    mSet = new Token[] {};
+    mSet = SyncSet.PROGRAM;
 
     try {
       switch (mT.type) {
@@ -123,7 +368,7 @@ public class Parser {
   }
 
   void programTail() {
-    mSet = new Token[] {};
+    mSet = SyncSet.PROGRAM;
 
     try {
       switch (mT.type) {
@@ -158,7 +403,7 @@ public class Parser {
   }
 
   void programTailTail() {
-    mSet = new Token[] {};
+    mSet = SyncSet.PROGRAM;
 
     try {
       switch (mT.type) {
@@ -188,7 +433,7 @@ public class Parser {
   }
 
   void identifierList() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -208,7 +453,7 @@ public class Parser {
   }
 
   void identifierListTail() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -231,9 +476,7 @@ public class Parser {
   }
 
   void declarations() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -262,9 +505,7 @@ public class Parser {
   }
 
   void declarationsTail() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -298,7 +539,7 @@ public class Parser {
   }
 
   void type() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TYPE;
 
     try {
       switch (mT.type) {
@@ -336,7 +577,7 @@ public class Parser {
   }
 
   void standardType() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TYPE;
 
     try {
       switch (mT.type) {
@@ -363,7 +604,7 @@ public class Parser {
   }
 
   void subprogramDeclarations() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -388,7 +629,7 @@ public class Parser {
   }
 
   void subprogramDeclarationsTail() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATIONS;
 
     try {
       switch (mT.type) {
@@ -416,7 +657,9 @@ public class Parser {
   }
 
   void subprogramDeclaration() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    if (mAheadStarts != null && takeAhead())
+      return;
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     // try {
     switch (mT.type) {
@@ -440,7 +683,7 @@ public class Parser {
   }
 
   void subprogramDeclarationTail() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     // try {
     switch (mT.type) {
@@ -473,7 +716,7 @@ public class Parser {
   }
 
   void subprogramDeclarationTailTail() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     // try {
     switch (mT.type) {
@@ -501,9 +744,7 @@ public class Parser {
   }
 
   void subprogramHead() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.VAR), pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_HEAD;
 
     try {
       switch (mT.type) {
@@ -528,9 +769,7 @@ public class Parser {
   }
 
   void subprogramHeadTail() {
-    mSet =
-        new Token[] {pair(TokType.RESWRD, ResWordAttr.VAR), pair(TokType.RESWRD, ResWordAttr.PROC),
-            pair(TokType.RESWRD, ResWordAttr.BEGIN)};
+    mSet = SyncSet.SUBPROGRAM_HEAD;
 
     try {
       switch (mT.type) {
@@ -553,7 +792,7 @@ public class Parser {
   }
 
   void arguments() {
-    mSet = new Token[] {pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.SUBPROGRAM_DECLARATION;
 
     try {
       switch (mT.type) {
@@ -574,7 +813,7 @@ public class Parser {
   }
 
   void parameterList() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -596,7 +835,7 @@ public class Parser {
   }
 
   void parameterListTail() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -621,7 +860,7 @@ public class Parser {
   }
 
   void compoundStatement() {
-    mSet = new Token[] {pair(TokType.DOT, null), pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.COMPOUND_STATEMENT;
 
     try {
       switch (mT.type) {
@@ -645,7 +884,7 @@ public class Parser {
   }
 
   void compoundStatementTail() {
-    mSet = new Token[] {pair(TokType.DOT, null), pair(TokType.SEMICOLON, null)};
+    mSet = SyncSet.COMPOUND_STATEMENT;
 
     try {
       switch (mT.type) {
@@ -691,7 +930,7 @@ public class Parser {
   }
 
   void optionalStatements() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.END)};
+    mSet = SyncSet.STATEMENT_LIST;
 
     // try {
     switch (mT.type) {
@@ -729,7 +968,7 @@ public class Parser {
   }
 
   void statementList() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.END)};
+    mSet = SyncSet.STATEMENT_LIST;
 
     // try {
     switch (mT.type) {
@@ -772,7 +1011,7 @@ public class Parser {
   }
 
   void statementListTail() {
-    mSet = new Token[] {pair(TokType.RESWRD, ResWordAttr.END)};
+    mSet = SyncSet.STATEMENT_LIST;
 
     try {
       switch (mT.type) {
@@ -799,9 +1038,7 @@ public class Parser {
   }
 
   void statement() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -848,9 +1085,7 @@ public class Parser {
   }
 
   void statementTail() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -880,7 +1115,7 @@ public class Parser {
   }
 
   void variable() {
-    mSet = new Token[] {pair(TokType.ASSIGNOP, null)};
+    mSet = SyncSet.VARIABLE;
 
     try {
       switch (mT.type) {
@@ -900,7 +1135,7 @@ public class Parser {
   }
 
   void variableTail() {
-    mSet = new Token[] {pair(TokType.ASSIGNOP, null)};
+    mSet = SyncSet.VARIABLE;
 
     try {
       switch (mT.type) {
@@ -923,9 +1158,7 @@ public class Parser {
   }
 
   void procedureStatment() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -950,9 +1183,7 @@ public class Parser {
   }
 
   void procedureStatementTail() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE)};
+    mSet = SyncSet.STATEMENT;
 
     try {
       switch (mT.type) {
@@ -985,7 +1216,7 @@ public class Parser {
   }
 
   void expressionList() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     // try {
     switch (mT.type) {
@@ -1036,7 +1267,7 @@ public class Parser {
   }
 
   void expressionListTail() {
-    mSet = new Token[] {pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.PAREN_LIST;
 
     try {
       switch (mT.type) {
@@ -1059,11 +1290,7 @@ public class Parser {
   }
 
   void expression() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.EXPRESSION;
 
     // try {
     switch (mT.type) {
@@ -1114,11 +1341,7 @@ public class Parser {
   }
 
   void expressionTail() {
-    mSet =
-        new Token[] {pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.EXPRESSION;
 
     try {
       switch (mT.type) {
@@ -1163,11 +1386,7 @@ public class Parser {
   }
 
   void simpleExpression() {
-    mSet =
-        new Token[] {pair(TokType.RELOP, null), pair(TokType.SEMICOLON, null),
-            pair(TokType.RESWRD, ResWordAttr.END), pair(TokType.RESWRD, ResWordAttr.ELSE),
-            pair(TokType.RESWRD, ResWordAttr.THEN), pair(TokType.CLOSEBRACKET, null),
-            pair(TokType.COMMA, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.SIMPLE_EXPRESSION;
 
     // try {
     switch (mT.type) {
@@ -1220,11 +1439,7 @@ public class Parser {
   }
 
   void simpleExpressionTail() {
-    mSet =
-        new Token[] {pair(TokType.RELOP, null), pair(TokType.SEMICOLON, null),
-            pair(TokType.RESWRD, ResWordAttr.END), pair(TokType.RESWRD, ResWordAttr.ELSE),
-            pair(TokType.RESWRD, ResWordAttr.THEN), pair(TokType.CLOSEBRACKET, null),
-            pair(TokType.COMMA, null), pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.SIMPLE_EXPRESSION;
 
     try {
       switch (mT.type) {
@@ -1272,12 +1487,7 @@ public class Parser {
   }
 
   void term() {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TERM;
 
     // try {
     switch (mT.type) {
@@ -1315,12 +1525,7 @@ public class Parser {
   }
 
   void termTail() {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null)};
+    mSet = SyncSet.TERM;
 
     try {
       switch (mT.type) {
@@ -1370,12 +1575,7 @@ public class Parser {
   }
 
   void factor() {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null), pair(TokType.MULOP, null)};
+    mSet = SyncSet.FACTOR;
 
     try {
       switch (mT.type) {
@@ -1413,12 +1613,7 @@ public class Parser {
   }
 
   void factorTail() {
-    mSet =
-        new Token[] {pair(TokType.ADDOP, null), pair(TokType.RELOP, null),
-            pair(TokType.SEMICOLON, null), pair(TokType.RESWRD, ResWordAttr.END),
-            pair(TokType.RESWRD, ResWordAttr.ELSE), pair(TokType.RESWRD, ResWordAttr.THEN),
-            pair(TokType.CLOSEBRACKET, null), pair(TokType.COMMA, null),
-            pair(TokType.CLOSEPAREN, null), pair(TokType.MULOP, null)};
+    mSet = SyncSet.FACTOR;
 
     try {
       switch (mT.type) {
@@ -1471,9 +1666,7 @@ public class Parser {
   }
 
   void sign() {
-    mSet =
-        new Token[] {pair(TokType.ID, null), pair(TokType.NUM, null),
-            pair(TokType.OPENPAREN, null), pair(TokType.RESWRD, ResWordAttr.NOT)};
+    mSet = SyncSet.SIGN;
 
     try {
       switch (mT.type) {
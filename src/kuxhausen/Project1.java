@@ -1,7 +1,5 @@
 package kuxhausen;
 
-import java.util.Scanner;
-
 import kuxhausen.Token.TokType;
 
 /**
@@ -10,19 +8,60 @@ import kuxhausen.Token.TokType;
 public class Project1 {
 
   public static void main(String[] args) {
-    for (String filename : args) {
-      Scanner file = Lexar.getFile("input/" + filename + ".pas");
-      if (file != null) {
-        Lexar l = new Lexar(file);
+    Batch.run(args, Metrics.wrap("Project1", CompileCache.wrap("Project1", new Batch.Job() {
+      public void compile(String filename) {
+        Project1.compile(filename);
+      }
+    }, ".listing", ".token")));
+    Metrics.writeReport();
+  }
+
+  /**
+   * lexes and lists input/filename.pas, writing its results under output/
+   */
+  static void compile(String filename) {
+    compile("input/" + filename + ".pas", "output/" + filename);
+  }
+
+  /**
+   * lexes and lists the given source, writing its results to output plus .listing, .token
+   */
+  static void compile(String source, String output) {
+    if (Lexar.STREAMING) {
+      Lexar l = Lexar.openStream(source);
+      if (l != null) {
+        StreamingWriter w =
+            new StreamingWriter(output + ".listing", output + ".token", l.getSourceBuffer());
         while (true) {
-          if (l.getNextToken().type == TokType.$)
+          Token t = l.getNextToken();
+          w.add(t);
+          if (t.type == TokType.$)
             break;
         }
-        Utils.writeListingFile("output/" + filename + ".listing", l.getTokenList(),
-            l.getSourceBuffer());
-        Utils.writeTokenFile("output/" + filename + ".token", l.getTokenList());
+        w.close();
+      }
+      return;
+    }
+
+    if (Lexar.TOKEN_STORE) {
+      Lexar l = Lexar.open(source);
+      if (l != null) {
+        TokenStore tokens = l.lexAll();
+        Utils.writeListingFile(output + ".listing", tokens, l.getSourceBuffer());
+        Utils.writeTokenFile(output + ".token", tokens);
+      }
+      return;
+    }
 
+    Lexar l = Lexar.open(source);
+    if (l != null) {
+      while (true) {
+        if (l.getNextToken().type == TokType.$)
+          break;
       }
+      Utils.writeListingFile(output + ".listing", l.getTokenList(), l.getSourceBuffer());
+      Utils.writeTokenFile(output + ".token", l.getTokenList());
+
     }
   }
 
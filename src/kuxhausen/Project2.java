@@ -1,23 +1,60 @@
 package kuxhausen;
 
-import java.util.Scanner;
-
 /**
  * @author Eric Kuxhausen
  */
 public class Project2 {
   public static void main(String[] args) {
-    for (String filename : args) {
-      Scanner file = Lexar.getFile("input/" + filename + ".pas");
-      if (file != null) {
-        Lexar l = new Lexar(file);
-        Parser p = new Parser(l);
+    Batch.run(args, Metrics.wrap("Project2", CompileCache.wrap("Project2", new Batch.Job() {
+      public void compile(String filename) {
+        Project2.compile(filename);
+      }
+    }, ".listing", ".token")));
+    Metrics.writeReport();
+  }
 
-        Utils.writeListingFile("output/" + filename + ".listing", p.getTokenList(),
-            l.getSourceBuffer());
-        Utils.writeTokenFile("output/" + filename + ".token", p.getTokenList());
+  /**
+   * lexes and parses input/filename.pas, writing its results under output/
+   */
+  static void compile(String filename) {
+    compile("input/" + filename + ".pas", "output/" + filename);
+  }
 
+  /**
+   * lexes and parses the given source, writing its results to output plus .listing, .token
+   */
+  static void compile(String source, String output) {
+    if (Lexar.STREAMING) {
+      Lexar l = Lexar.openStream(source);
+      if (l != null) {
+        StreamingWriter w =
+            new StreamingWriter(output + ".listing", output + ".token", l.getSourceBuffer());
+        if (TableParser.ENABLED)
+          new TableParser(l, w);
+        else
+          new Parser(l, w);
+        w.close();
       }
+      return;
+    }
+
+    if (Lexar.TOKEN_STORE) {
+      Lexar l = Lexar.open(source);
+      if (l != null) {
+        Parser p = TableParser.ENABLED ? new TableParser(l.lexAll()) : new Parser(l.lexAll());
+        Utils.writeListingFile(output + ".listing", p.getTokenStore(), l.getSourceBuffer());
+        Utils.writeTokenFile(output + ".token", p.getTokenStore());
+      }
+      return;
+    }
+
+    Lexar l = Lexar.open(source);
+    if (l != null) {
+      Parser p = TableParser.ENABLED ? new TableParser(l) : new Parser(l);
+
+      Utils.writeListingFile(output + ".listing", p.getTokenList(), l.getSourceBuffer());
+      Utils.writeTokenFile(output + ".token", p.getTokenList());
+
     }
   }
 }
@@ -1,23 +1,58 @@
 package kuxhausen;
 
-import java.util.Scanner;
-
 /**
  * @author Eric Kuxhausen
  */
 public class Project34 {
   public static void main(String[] args) {
-    for (String filename : args) {
-      Scanner file = Lexar.getFile("input/" + filename + ".pas");
-      if (file != null) {
-        Lexar l = new Lexar(file);
-        DecoratedParser p = new DecoratedParser(l, ("output/" + filename + ".loc"));
+    Batch.run(args, Metrics.wrap("Project34", CompileCache.wrap("Project34", new Batch.Job() {
+      public void compile(String filename) {
+        Project34.compile(filename);
+      }
+    }, ".listing", ".token", ".loc")));
+    Metrics.writeReport();
+  }
 
-        Utils.writeListingFile("output/" + filename + ".listing", p.getTokenList(),
-            l.getSourceBuffer());
-        Utils.writeTokenFile("output/" + filename + ".token", p.getTokenList());
+  /**
+   * lexes and parses input/filename.pas, writing its results under output/
+   */
+  static void compile(String filename) {
+    compile("input/" + filename + ".pas", "output/" + filename);
+  }
 
+  /**
+   * lexes and parses the given source, writing its results to output plus .listing, .token and
+   * .loc
+   */
+  static void compile(String source, String output) {
+    if (Lexar.STREAMING) {
+      Lexar l = Lexar.openStream(source);
+      if (l != null) {
+        StreamingWriter w =
+            new StreamingWriter(output + ".listing", output + ".token", l.getSourceBuffer());
+        new DecoratedParser(l, (output + ".loc"), w);
+        w.close();
       }
+      return;
+    }
+
+    if (Lexar.TOKEN_STORE) {
+      Lexar l = Lexar.open(source);
+      if (l != null) {
+        DecoratedParser p = new DecoratedParser(l.lexAll(), (output + ".loc"));
+        Utils.writeListingFile(output + ".listing", p.getTokenStore(), l.getSourceBuffer());
+        Utils.writeTokenFile(output + ".token", p.getTokenStore());
+      }
+      return;
+    }
+
+    Lexar l = Lexar.open(source);
+    if (l != null) {
+      DecoratedParser p = new DecoratedParser(l, (output + ".loc"));
+
+      Utils.writeListingFile(output + ".listing", p.getTokenList(), l.getSourceBuffer());
+      Utils.writeTokenFile(output + ".token", p.getTokenList());
+
     }
   }
 }
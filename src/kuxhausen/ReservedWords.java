@@ -0,0 +1,143 @@
+package kuxhausen;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.util.HashMap;
+import java.util.Scanner;
+
+import kuxhausen.Token.ResWordAttr;
+import kuxhausen.Token.TokType;
+
+/**
+ * @author Eric Kuxhausen The reserved word table from input/reservedwords.txt, loaded once per JVM
+ *         and shared read only by every Lexar. On load a perfect hash is searched for over the
+ *         words' length and first, second and last chars, so a candidate can be looked up straight
+ *         from the SourceBuffer with one hash and one char comparison.
+ */
+public class ReservedWords {
+
+  public static final String PATH = "input/reservedwords.txt";
+
+  private static ReservedWords shared;
+
+  public static synchronized ReservedWords getShared() {
+    if (shared == null)
+      shared = new ReservedWords(PATH);
+    return shared;
+  }
+
+  private HashMap<String, Token> table = new HashMap<String, Token>();
+  private boolean found;
+
+  /**
+   * perfect hash slots, each holding the one word that hashes there or null
+   */
+  private Token[] slots;
+  private int seed;
+  private int shift;
+
+  public ReservedWords(String path) {
+    SourcePointer origin = new SourcePointer();
+    try {
+      Scanner wordFile = new Scanner(new BufferedReader(new FileReader(path)));
+
+      while (wordFile.hasNextLine() && wordFile.hasNext()) {
+        String lexeme = wordFile.next();
+        String resType = wordFile.next();
+        int attribute = wordFile.nextInt();
+
+        if (resType.equals(TokType.ADDOP.toString())) {
+          table.put(lexeme, new Token(TokType.ADDOP, attribute, lexeme, origin));
+        } else if (resType.equals(TokType.MULOP.toString())) {
+          table.put(lexeme, new Token(TokType.MULOP, attribute, lexeme, origin));
+        } else {
+          for (ResWordAttr tt : ResWordAttr.values()) {
+            if (resType.equals(tt.toString())) {
+              table.put(lexeme, new Token(TokType.RESWRD, tt.ordinal(), lexeme, origin));
+            }
+          }
+        }
+      }
+
+      wordFile.close();
+      found = true;
+    } catch (FileNotFoundException e) {
+      found = false;
+    }
+    buildPerfectHash();
+  }
+
+  private static int key(int length, char first, char second, char last) {
+    return first | (second << 8) | (last << 16) | (length << 24);
+  }
+
+  private static int key(String word) {
+    int length = word.length();
+    return key(length, word.charAt(0), (length > 1) ? word.charAt(1) : 0, word.charAt(length - 1));
+  }
+
+  private int slot(int key) {
+    return (key * seed) >>> shift;
+  }
+
+  /**
+   * tries multiplicative hashes into ever larger tables until every word lands in its own slot
+   */
+  private void buildPerfectHash() {
+    for (int bits = 4; bits <= 16; bits++) {
+      shift = 32 - bits;
+      for (seed = 0x9E3779B1; seed != 0x9E3779B1 + 4096 * 2; seed += 2) {
+        slots = new Token[1 << bits];
+        boolean collision = false;
+        for (Token word : table.values()) {
+          int s = slot(key(word.lexeme));
+          if (slots[s] != null) {
+            collision = true;
+            break;
+          }
+          slots[s] = word;
+        }
+        if (!collision)
+          return;
+      }
+    }
+    // words too alike for a perfect hash, fall back to the HashMap
+    slots = null;
+  }
+
+  public boolean wasFound() {
+    return found;
+  }
+
+  public int size() {
+    return table.size();
+  }
+
+  /**
+   * @return the reserved word token template for lexeme, or null
+   */
+  public Token lookup(String lexeme) {
+    return table.get(lexeme);
+  }
+
+  /**
+   * @return the reserved word spelled by the given absolute range of source, or null
+   */
+  public Token lookup(SourceBuffer source, int start, int length) {
+    if (length == 0)
+      return null;
+    if (slots == null)
+      return table.get(source.substring(start, start + length));
+
+    char second = (length > 1) ? source.charAt(start + 1) : 0;
+    Token word =
+        slots[slot(key(length, source.charAt(start), second, source.charAt(start + length - 1)))];
+    if (word == null || word.lexeme.length() != length)
+      return null;
+    for (int i = 0; i < length; i++)
+      if (word.lexeme.charAt(i) != source.charAt(start + i))
+        return null;
+    return word;
+  }
+}
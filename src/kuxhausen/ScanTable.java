@@ -0,0 +1,130 @@
+package kuxhausen;
+
+/**
+ * @author Eric Kuxhausen Precomputed character classes and DFA transitions used by Lexar's
+ *         table-driven scanning mode. One pass over a lexeme walks this table until no transition
+ *         exists; the state it stops in decides which token (or LEXERR) to build.
+ */
+public class ScanTable {
+
+  // character classes
+  static final int C_LETTER = 0;
+  static final int C_E = 1; // 'e' and 'E' are letters and exponent markers
+  static final int C_DIGIT = 1 + C_E;
+  static final int C_WS = 1 + C_DIGIT;
+  static final int C_DOT = 1 + C_WS;
+  static final int C_SIGN = 1 + C_DOT;
+  static final int C_LT = 1 + C_SIGN;
+  static final int C_GT = 1 + C_LT;
+  static final int C_EQ = 1 + C_GT;
+  static final int C_COLON = 1 + C_EQ;
+  static final int C_PUNCT = 1 + C_COLON;
+  static final int C_OTHER = 1 + C_PUNCT;
+  static final int NUM_CLASSES = 1 + C_OTHER;
+
+  // states
+  static final int S_NONE = -1;
+  static final int S_START = 0;
+  static final int S_ID = 1;
+  static final int S_INT = 2;
+  static final int S_INT_DOT = 3;
+  static final int S_FRAC = 4;
+  static final int S_EXP = 5;
+  static final int S_EXP_SIGN = 6;
+  static final int S_EXP_DIGITS = 7;
+  static final int S_LT = 8;
+  static final int S_LT_GT = 9;
+  static final int S_LT_EQ = 10;
+  static final int S_GT = 11;
+  static final int S_GT_EQ = 12;
+  static final int S_EQ = 13;
+  static final int S_COLON = 14;
+  static final int S_ASSIGN = 15;
+  static final int S_DOT = 16;
+  static final int S_DOTDOT = 17;
+  static final int S_PUNCT = 18;
+  static final int S_OTHER = 19;
+  static final int NUM_STATES = 20;
+
+  /**
+   * class of every 7-bit character, anything above is C_OTHER
+   */
+  static final int[] CHAR_CLASS = new int[128];
+
+  /**
+   * TRANSITION[state * NUM_CLASSES + class] is the next state or S_NONE
+   */
+  static final int[] TRANSITION = new int[NUM_STATES * NUM_CLASSES];
+
+  static {
+    for (int c = 0; c < CHAR_CLASS.length; c++) {
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))
+        CHAR_CLASS[c] = C_LETTER;
+      else if (c >= '0' && c <= '9')
+        CHAR_CLASS[c] = C_DIGIT;
+      else
+        CHAR_CLASS[c] = C_OTHER;
+    }
+    CHAR_CLASS['e'] = C_E;
+    CHAR_CLASS['E'] = C_E;
+    CHAR_CLASS[' '] = C_WS;
+    CHAR_CLASS['\t'] = C_WS;
+    CHAR_CLASS['\n'] = C_WS;
+    CHAR_CLASS['.'] = C_DOT;
+    CHAR_CLASS['+'] = C_SIGN;
+    CHAR_CLASS['-'] = C_SIGN;
+    CHAR_CLASS['<'] = C_LT;
+    CHAR_CLASS['>'] = C_GT;
+    CHAR_CLASS['='] = C_EQ;
+    CHAR_CLASS[':'] = C_COLON;
+    for (char c : "();,[]*/".toCharArray())
+      CHAR_CLASS[c] = C_PUNCT;
+
+    for (int i = 0; i < TRANSITION.length; i++)
+      TRANSITION[i] = S_NONE;
+
+    on(S_START, C_LETTER, S_ID);
+    on(S_START, C_E, S_ID);
+    on(S_START, C_DIGIT, S_INT);
+    on(S_START, C_DOT, S_DOT);
+    on(S_START, C_SIGN, S_PUNCT);
+    on(S_START, C_LT, S_LT);
+    on(S_START, C_GT, S_GT);
+    on(S_START, C_EQ, S_EQ);
+    on(S_START, C_COLON, S_COLON);
+    on(S_START, C_PUNCT, S_PUNCT);
+    on(S_START, C_OTHER, S_OTHER);
+
+    on(S_ID, C_LETTER, S_ID);
+    on(S_ID, C_E, S_ID);
+    on(S_ID, C_DIGIT, S_ID);
+
+    on(S_INT, C_DIGIT, S_INT);
+    on(S_INT, C_DOT, S_INT_DOT);
+    on(S_INT_DOT, C_DIGIT, S_FRAC);
+    on(S_FRAC, C_DIGIT, S_FRAC);
+    on(S_FRAC, C_E, S_EXP);
+    on(S_EXP, C_SIGN, S_EXP_SIGN);
+    on(S_EXP, C_DIGIT, S_EXP_DIGITS);
+    on(S_EXP_SIGN, C_DIGIT, S_EXP_DIGITS);
+    on(S_EXP_DIGITS, C_DIGIT, S_EXP_DIGITS);
+
+    on(S_LT, C_GT, S_LT_GT);
+    on(S_LT, C_EQ, S_LT_EQ);
+    on(S_GT, C_EQ, S_GT_EQ);
+    on(S_COLON, C_EQ, S_ASSIGN);
+    on(S_DOT, C_DOT, S_DOTDOT);
+  }
+
+  private static void on(int state, int charClass, int next) {
+    TRANSITION[state * NUM_CLASSES + charClass] = next;
+  }
+
+  static int classOf(char c) {
+    return (c < 128) ? CHAR_CLASS[c] : C_OTHER;
+  }
+
+  static int next(int state, char c) {
+    return TRANSITION[state * NUM_CLASSES + classOf(c)];
+  }
+}
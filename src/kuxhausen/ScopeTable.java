@@ -0,0 +1,204 @@
+package kuxhausen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * @author Eric Kuxhausen Name resolution index for DecoratedParser's scope tree. Every symbol id
+ *         heads a chain of the declarations currently visible for it, innermost first, so finding
+ *         a name is one array index instead of a walk over every enclosing scope's children.
+ *         Greens and blues are kept in separate chains since lookups never mix them. Leaving a
+ *         scope unlinks exactly the declarations it made, uncovering whatever they shadowed. A
+ *         table that keeps history can also be frozen, giving a read only view that goes on
+ *         finding what was visible at that moment however the table changes afterwards.
+ */
+public class ScopeTable {
+
+  private static class Entry {
+    Node node;
+    int depth;
+    Entry shadowed;
+    int symbol;
+    boolean green;
+
+    /**
+     * clock when declared and when its scope was left
+     */
+    int added;
+    int removed = Integer.MAX_VALUE;
+
+    Entry(Node node, int symbol, boolean green, int depth, Entry shadowed) {
+      this.node = node;
+      this.symbol = symbol;
+      this.green = green;
+      this.depth = depth;
+      this.shadowed = shadowed;
+    }
+  }
+
+  private Entry[] blues = new Entry[64];
+  private Entry[] greens = new Entry[64];
+
+  /**
+   * declarations made in each open scope, outermost first
+   */
+  private ArrayList<ArrayList<Entry>> scopes = new ArrayList<ArrayList<Entry>>();
+
+  /**
+   * every declaration made for each symbol in the order made, null unless history is kept
+   */
+  private ArrayList<ArrayList<Entry>> blueHistory;
+  private ArrayList<ArrayList<Entry>> greenHistory;
+
+  /**
+   * ticks on every declaration and every scope left
+   */
+  private int clock;
+
+  /**
+   * the clock this view was frozen at, or -1 for a live table
+   */
+  private int frozenAt = -1;
+
+  public ScopeTable() {
+    this(false);
+  }
+
+  /**
+   * @param keepHistory if set the table can be frozen, at the cost of keeping every declaration
+   */
+  public ScopeTable(boolean keepHistory) {
+    if (keepHistory) {
+      blueHistory = new ArrayList<ArrayList<Entry>>();
+      greenHistory = new ArrayList<ArrayList<Entry>>();
+    }
+    enterScope();
+  }
+
+  private ScopeTable(ScopeTable live) {
+    blueHistory = live.blueHistory;
+    greenHistory = live.greenHistory;
+    frozenAt = live.clock;
+  }
+
+  /**
+   * @return a view finding what this table finds now, for as long as it is kept. Views only read
+   *         the history, so any number may be used at once once the table stops changing.
+   */
+  public ScopeTable freeze() {
+    if (blueHistory == null)
+      throw new IllegalStateException("only a table that keeps history can be frozen");
+    return new ScopeTable(this);
+  }
+
+  /**
+   * @return nesting depth of the current scope, the outermost being 0
+   */
+  public int depth() {
+    return scopes.size() - 1;
+  }
+
+  public void enterScope() {
+    scopes.add(new ArrayList<Entry>());
+  }
+
+  public void exitScope() {
+    ArrayList<Entry> declared = scopes.remove(scopes.size() - 1);
+    clock++;
+    for (int i = declared.size() - 1; i >= 0; i--) {
+      Entry e = declared.get(i);
+      e.removed = clock;
+      if (e.green)
+        greens[e.symbol] = e.shadowed;
+      else
+        blues[e.symbol] = e.shadowed;
+    }
+  }
+
+  private void grow(int symbol) {
+    if (symbol >= blues.length) {
+      int capacity = Math.max(symbol + 1, blues.length * 2);
+      blues = Arrays.copyOf(blues, capacity);
+      greens = Arrays.copyOf(greens, capacity);
+    }
+  }
+
+  public void addGreen(int symbol, GreenNode green) {
+    grow(symbol);
+    Entry e = new Entry(green, symbol, true, depth(), greens[symbol]);
+    greens[symbol] = e;
+    declared(e, greenHistory);
+  }
+
+  public void addBlue(int symbol, BlueNode blue) {
+    grow(symbol);
+    Entry e = new Entry(blue, symbol, false, depth(), blues[symbol]);
+    blues[symbol] = e;
+    declared(e, blueHistory);
+  }
+
+  private void declared(Entry e, ArrayList<ArrayList<Entry>> history) {
+    if (frozenAt >= 0)
+      throw new IllegalStateException("frozen tables can't be changed");
+    e.added = ++clock;
+    scopes.get(depth()).add(e);
+    if (history != null) {
+      while (history.size() <= e.symbol)
+        history.add(new ArrayList<Entry>(1));
+      history.get(e.symbol).add(e);
+    }
+  }
+
+  /**
+   * @return the declaration that was innermost for symbol when frozen. That is the last one made
+   *         by then, or if its scope had been left, whatever it shadowed.
+   */
+  private Node visibleWhenFrozen(int symbol, ArrayList<ArrayList<Entry>> history) {
+    if (symbol < 0 || symbol >= history.size())
+      return null;
+    ArrayList<Entry> made = history.get(symbol);
+    int low = 0;
+    int high = made.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (made.get(mid).added <= frozenAt)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    Entry e = (low > 0) ? made.get(low - 1) : null;
+    while (e != null && e.removed <= frozenAt)
+      e = e.shadowed;
+    return (e != null) ? e.node : null;
+  }
+
+  /**
+   * @return the innermost visible program or procedure with this symbol, or null
+   */
+  public GreenNode findGreen(int symbol) {
+    if (frozenAt >= 0)
+      return (GreenNode) visibleWhenFrozen(symbol, greenHistory);
+    if (symbol < 0 || symbol >= greens.length || greens[symbol] == null)
+      return null;
+    return (GreenNode) greens[symbol].node;
+  }
+
+  /**
+   * @return the innermost visible var or param with this symbol, or null
+   */
+  public BlueNode findBlue(int symbol) {
+    if (frozenAt >= 0)
+      return (BlueNode) visibleWhenFrozen(symbol, blueHistory);
+    if (symbol < 0 || symbol >= blues.length || blues[symbol] == null)
+      return null;
+    return (BlueNode) blues[symbol].node;
+  }
+
+  /**
+   * @return true if the current scope itself declares a var or param with this symbol
+   */
+  public boolean declaresBlue(int symbol) {
+    return symbol >= 0 && symbol < blues.length && blues[symbol] != null
+        && blues[symbol].depth == depth();
+  }
+}
@@ -1,32 +1,216 @@
 package kuxhausen;
 
-import java.util.ArrayList;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 /**
  * @author Eric Kuxhausen Stores source code with the requirements of: preserving line numbers,
  *         providing access by line number, and facilitating per-character linear traversal with
- *         SourcePointers.
+ *         SourcePointers. All lines live back to back in one char array, indexed by the offset
+ *         each line starts at. When fed from a reader, lines are pulled in as traversal reaches
+ *         them and lines that are no longer needed can be discarded, so only a window of the
+ *         source is held at once. Line numbers stay absolute either way.
  */
 public class SourceBuffer {
-  private ArrayList<String> sourceBuffer = new ArrayList<String>();
+  private char[] chars = new char[4096];
+  private int numChars;
+
+  /**
+   * lineStarts[i] is the offset of stored line i in chars, lineStarts[numLines] is numChars
+   */
+  private int[] lineStarts = new int[256];
+  private int numLines;
+
+  /**
+   * absolute number of the first line still stored
+   */
+  private int firstLine;
+
+  private BufferedReader feed;
+  private int feedLineLength;
 
   public SourceBuffer() {}
 
+  /**
+   * Lines will be read from reader on demand, truncated to maxLineLength chars plus \n
+   */
+  public void setFeed(BufferedReader reader, int maxLineLength) {
+    feed = reader;
+    feedLineLength = maxLineLength;
+  }
+
+  /**
+   * reads from the feed until the given line is stored or input runs out
+   *
+   * @return true if the line is now available
+   */
+  private boolean fill(int number) {
+    while (feed != null && number >= getNumLines()) {
+      try {
+        String line = feed.readLine();
+        if (line != null) {
+          addLine(line.substring(0, Math.min(feedLineLength, line.length())) + "\n");
+        } else {
+          feed.close();
+          feed = null;
+        }
+      } catch (IOException e) {
+        feed = null;
+      }
+    }
+    return number < getNumLines();
+  }
+
   public void addLine(String line) {
-    sourceBuffer.add(line);
+    ensureCapacity(line.length());
+    line.getChars(0, line.length(), chars, numChars);
+    numChars += line.length();
+    endLine();
+  }
+
+  /**
+   * appends one char to the line currently being built, finish the line with endLine()
+   */
+  public void append(char c) {
+    if (numChars == chars.length)
+      ensureCapacity(1);
+    chars[numChars++] = c;
+  }
+
+  /**
+   * closes the line built up by append()
+   */
+  public void endLine() {
+    if (numLines + 2 > lineStarts.length)
+      lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+    numLines++;
+    lineStarts[numLines] = numChars;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (numChars + extra > chars.length)
+      chars = Arrays.copyOf(chars, Math.max(chars.length * 2, numChars + extra));
+  }
+
+  /**
+   * Replaces lines from up to but not including to with the given lines, each already ending in
+   * \n. Later lines shift to make room and are renumbered. Only for a buffer holding its whole
+   * source, with no feed and nothing discarded.
+   */
+  public void replaceLines(int from, int to, String[] lines) {
+    if (feed != null || firstLine != 0)
+      throw new IllegalStateException("source isn't fully loaded");
+    int start = lineStarts[from];
+    int end = lineStarts[to];
+    int length = 0;
+    for (String line : lines)
+      length += line.length();
+    int delta = length - (end - start);
+    int lineDelta = lines.length - (to - from);
+
+    if (delta > 0)
+      ensureCapacity(delta);
+    System.arraycopy(chars, end, chars, end + delta, numChars - end);
+    if (numLines + lineDelta + 2 > lineStarts.length)
+      lineStarts =
+          Arrays.copyOf(lineStarts, Math.max(lineStarts.length * 2, numLines + lineDelta + 2));
+    System.arraycopy(lineStarts, to, lineStarts, from + lines.length, numLines - to + 1);
+    numLines += lineDelta;
+    numChars += delta;
+    for (int i = from + lines.length; i <= numLines; i++)
+      lineStarts[i] += delta;
+
+    int offset = start;
+    for (int i = 0; i < lines.length; i++) {
+      lineStarts[from + i] = offset;
+      lines[i].getChars(0, lines[i].length(), chars, offset);
+      offset += lines[i].length();
+    }
   }
 
+  /**
+   * @return true if the stored line is the first length chars of text followed by \n
+   */
+  public boolean lineEquals(int number, String text, int length) {
+    if (getLineLength(number) != length + 1)
+      return false;
+    int start = getLineStart(number);
+    for (int i = 0; i < length; i++)
+      if (chars[start + i] != text.charAt(i))
+        return false;
+    return chars[start + length] == '\n';
+  }
+
+  /**
+   * Allows every line before the given one to be dropped. Storage is only compacted once the dead
+   * prefix is at least half the buffer, so each char is moved a constant number of times.
+   */
+  public void discardBefore(int number) {
+    int drop = Math.min(number, getNumLines()) - firstLine;
+    if (drop <= 0 || lineStarts[drop] < numChars / 2)
+      return;
+
+    int from = lineStarts[drop];
+    System.arraycopy(chars, from, chars, 0, numChars - from);
+    numChars -= from;
+    for (int i = 0; i <= numLines - drop; i++)
+      lineStarts[i] = lineStarts[i + drop] - from;
+    numLines -= drop;
+    firstLine += drop;
+  }
+
+  /**
+   * @return the number of lines seen so far, including any that have been discarded
+   */
   public int getNumLines() {
-    return sourceBuffer.size();
+    return firstLine + numLines;
   }
 
-  public String getLine(int number) {
-    return sourceBuffer.get(number);
+  /**
+   * @return a read only view of the line that shares this buffer's storage
+   */
+  public CharSequence getLine(int number) {
+    return CharBuffer.wrap(chars, getLineStart(number), getLineLength(number)).asReadOnlyBuffer();
+  }
+
+  /**
+   * @return offset of the line into the backing array, valid until the next discardBefore()
+   */
+  public int getLineStart(int number) {
+    return lineStarts[number - firstLine];
+  }
+
+  public int getLineLength(int number) {
+    return lineStarts[number - firstLine + 1] - lineStarts[number - firstLine];
+  }
+
+  /**
+   * @param offset absolute offset into the buffer, see getLineStart()
+   */
+  public char charAt(int offset) {
+    return chars[offset];
+  }
+
+  /**
+   * copies out the given absolute range, used to build lexemes
+   */
+  public String substring(int from, int to) {
+    return new String(chars, from, to - from);
+  }
+
+  /**
+   * writes a line straight from the backing array
+   */
+  public void writeLine(int number, ChannelWriter out) {
+    out.write(chars, getLineStart(number), getLineLength(number));
   }
 
   public boolean hasNext(SourcePointer position) {
-    if (position.lineNum < sourceBuffer.size()
-        && position.charInLineNum < sourceBuffer.get(position.lineNum).length()) {
+    if (position.lineNum >= getNumLines() && !fill(position.lineNum))
+      return false;
+    if (position.charInLineNum < getLineLength(position.lineNum)) {
       return true;
     } else
       return false;
@@ -36,14 +220,14 @@ public class SourceBuffer {
    * guard with hasNextCharacter() to prevent out of bounds issues
    */
   public char peek(SourcePointer position) {
-    return sourceBuffer.get(position.lineNum).charAt(position.charInLineNum);
+    return chars[getLineStart(position.lineNum) + position.charInLineNum];
   }
 
   public char advanceChar(SourcePointer position) {
     if (hasNext(position)) {
       char result = peek(position);
 
-      if (position.charInLineNum < sourceBuffer.get(position.lineNum).length() - 1) {
+      if (position.charInLineNum < getLineLength(position.lineNum) - 1) {
         position.charInLineNum++;
       } else {
         position.lineNum++;
@@ -0,0 +1,36 @@
+package kuxhausen;
+
+/**
+ * @author Eric Kuxhausen Writes the listing and token files one token at a time, for use with a
+ *         streaming Lexar. Output matches Utils.writeListingFile and Utils.writeTokenFile over the
+ *         same token sequence. Source lines are released back to the SourceBuffer once listed.
+ */
+public class StreamingWriter {
+
+  private ChannelWriter listing;
+  private ChannelWriter tokenOutput;
+  private SourceBuffer source;
+  private int lineNo = -1;
+
+  public StreamingWriter(String listingFile, String tokenFile, SourceBuffer source) {
+    listing = ChannelWriter.open(listingFile);
+    tokenOutput = ChannelWriter.open(tokenFile);
+    this.source = source;
+    Utils.writeTokenHeader(tokenOutput);
+  }
+
+  public void add(Token t) {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.WRITE);
+    lineNo = Utils.writeListingEntry(listing, t, source, lineNo);
+    Utils.writeTokenLine(tokenOutput, t);
+    source.discardBefore(lineNo);
+    timer.stop();
+  }
+
+  public void close() {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.WRITE);
+    listing.close();
+    tokenOutput.close();
+    timer.stop();
+  }
+}
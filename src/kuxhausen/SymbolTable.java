@@ -1,15 +1,102 @@
 package kuxhausen;
 
 /**
- * @author Eric Kuxhausen
+ * @author Eric Kuxhausen Interns identifiers as they are lexed, giving each distinct name a dense
+ *         int id starting at 0. Later phases compare these ids instead of Strings. Lookups hash
+ *         straight from the SourceBuffer, so a String is only built the first time a name is seen.
  */
-import java.util.HashMap;
+import java.util.Arrays;
 
 public class SymbolTable {
 
-  public HashMap<String, Token> table;
+  /**
+   * ids in order of first appearance, id i is names[i]
+   */
+  private String[] names = new String[64];
+  private int size;
 
-  public SymbolTable() {
-    table = new HashMap<String, Token>();
+  /**
+   * open addressing table of id + 1, 0 marks an empty slot
+   */
+  private int[] slots = new int[128];
+
+  public SymbolTable() {}
+
+  public int size() {
+    return size;
+  }
+
+  public String getName(int id) {
+    return names[id];
+  }
+
+  /**
+   * @return the id of the identifier spelled by the given absolute range of source
+   */
+  public int intern(SourceBuffer source, int start, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++)
+      hash = 31 * hash + source.charAt(start + i);
+
+    int mask = slots.length - 1;
+    for (int s = mix(hash) & mask;; s = (s + 1) & mask) {
+      int id = slots[s] - 1;
+      if (id < 0)
+        return add(source.substring(start, start + length), s);
+      if (matches(names[id], source, start, length))
+        return id;
+    }
+  }
+
+  /**
+   * @return the id of name
+   */
+  public int intern(String name) {
+    int mask = slots.length - 1;
+    for (int s = mix(name.hashCode()) & mask;; s = (s + 1) & mask) {
+      int id = slots[s] - 1;
+      if (id < 0)
+        return add(name, s);
+      if (names[id].equals(name))
+        return id;
+    }
+  }
+
+  /**
+   * hashes are computed the same way as String.hashCode(), then spread over the table
+   */
+  private static int mix(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean matches(String name, SourceBuffer source, int start, int length) {
+    if (name.length() != length)
+      return false;
+    for (int i = 0; i < length; i++)
+      if (name.charAt(i) != source.charAt(start + i))
+        return false;
+    return true;
+  }
+
+  private int add(String name, int slot) {
+    if (size == names.length)
+      names = Arrays.copyOf(names, size * 2);
+    names[size] = name;
+    slots[slot] = ++size;
+
+    if (size * 2 > slots.length)
+      rehash();
+    return size - 1;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int id = 0; id < size; id++) {
+      int s = mix(names[id].hashCode()) & mask;
+      while (slots[s] != 0)
+        s = (s + 1) & mask;
+      slots[s] = id + 1;
+    }
   }
 }
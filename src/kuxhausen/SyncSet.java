@@ -0,0 +1,194 @@
+package kuxhausen;
+
+import kuxhausen.Token.AddopAttr;
+import kuxhausen.Token.MulopAttr;
+import kuxhausen.Token.RelopAttr;
+import kuxhausen.Token.ResWordAttr;
+import kuxhausen.Token.TokType;
+
+/**
+ * @author Eric Kuxhausen Panic mode sync set, a bitset over (TokType, attribute). RESWRD, RELOP,
+ *         ADDOP and MULOP get one bit per attribute and every other type a single bit, which fits
+ *         all of them in one long. The sets for each nonterminal are built once here and shared by
+ *         Parser and DecoratedParser, so recovering checks a token in constant time without
+ *         allocating. ParseTable numbers its columns by the same bits.
+ */
+public class SyncSet {
+
+  /**
+   * first bit of each TokType, by ordinal
+   */
+  private static final int[] OFFSET = new int[TokType.values().length];
+
+  /**
+   * all bits of each TokType, by ordinal
+   */
+  private static final long[] MASK = new long[TokType.values().length];
+
+  /**
+   * total number of bits, one per (TokType, attribute) pair
+   */
+  static final int SIZE;
+
+  static {
+    int bit = 0;
+    for (TokType t : TokType.values()) {
+      int width = attributeCount(t);
+      OFFSET[t.ordinal()] = bit;
+      MASK[t.ordinal()] = ((1L << width) - 1) << bit;
+      bit += width;
+    }
+    SIZE = bit;
+  }
+
+  static int attributeCount(TokType t) {
+    switch (t) {
+      case RESWRD:
+        return ResWordAttr.values().length;
+      case RELOP:
+        return RelopAttr.values().length;
+      case ADDOP:
+        return AddopAttr.values().length;
+      case MULOP:
+        return MulopAttr.values().length;
+      default:
+        return 1;
+    }
+  }
+
+  static final SyncSet PROGRAM = new SyncSet();
+  static final SyncSet PAREN_LIST = new SyncSet().with(TokType.CLOSEPAREN);
+  static final SyncSet DECLARATIONS = new SyncSet().with(TokType.RESWRD, ResWordAttr.PROC).with(
+      TokType.RESWRD, ResWordAttr.BEGIN);
+  static final SyncSet TYPE = new SyncSet().with(TokType.SEMICOLON).with(TokType.CLOSEPAREN);
+  static final SyncSet SUBPROGRAM_DECLARATIONS = new SyncSet().with(TokType.RESWRD,
+      ResWordAttr.BEGIN);
+  static final SyncSet SUBPROGRAM_DECLARATION = new SyncSet().with(TokType.SEMICOLON);
+  static final SyncSet SUBPROGRAM_HEAD = new SyncSet().with(TokType.RESWRD, ResWordAttr.VAR).with(
+      TokType.RESWRD, ResWordAttr.PROC).with(TokType.RESWRD, ResWordAttr.BEGIN);
+  static final SyncSet COMPOUND_STATEMENT = new SyncSet().with(TokType.DOT).with(
+      TokType.SEMICOLON);
+  static final SyncSet STATEMENT_LIST = new SyncSet().with(TokType.RESWRD, ResWordAttr.END);
+  static final SyncSet STATEMENT = new SyncSet().with(TokType.SEMICOLON).with(TokType.RESWRD,
+      ResWordAttr.END).with(TokType.RESWRD, ResWordAttr.ELSE);
+  static final SyncSet VARIABLE = new SyncSet().with(TokType.ASSIGNOP);
+  static final SyncSet EXPRESSION = new SyncSet(STATEMENT).with(TokType.RESWRD, ResWordAttr.THEN)
+      .with(TokType.CLOSEBRACKET).with(TokType.COMMA).with(TokType.CLOSEPAREN);
+  static final SyncSet SIMPLE_EXPRESSION = new SyncSet(EXPRESSION).with(TokType.RELOP);
+  static final SyncSet TERM = new SyncSet(SIMPLE_EXPRESSION).with(TokType.ADDOP);
+  static final SyncSet FACTOR = new SyncSet(TERM).with(TokType.MULOP);
+  static final SyncSet SIGN = new SyncSet().with(TokType.ID).with(TokType.NUM).with(
+      TokType.OPENPAREN).with(TokType.RESWRD, ResWordAttr.NOT);
+
+  private long bits;
+
+  SyncSet() {}
+
+  SyncSet(SyncSet copy) {
+    bits = copy.bits;
+  }
+
+  /**
+   * adds every token of the given type, whatever its attribute
+   */
+  private SyncSet with(TokType type) {
+    bits |= MASK[type.ordinal()];
+    return this;
+  }
+
+  private SyncSet with(TokType type, Enum<?> attr) {
+    bits |= 1L << (OFFSET[type.ordinal()] + attr.ordinal());
+    return this;
+  }
+
+  /**
+   * @return the bit of the given pair, or the first bit of its type if attr is -1
+   */
+  static int bit(TokType type, int attr) {
+    return OFFSET[type.ordinal()] + ((attr < 0) ? 0 : attr);
+  }
+
+  /**
+   * @return the bit of a lexed token
+   */
+  static int bit(Token t) {
+    int type = t.type.ordinal();
+    if (MASK[type] == 1L << OFFSET[type])
+      return OFFSET[type];
+    return OFFSET[type] + (int) t.attribute;
+  }
+
+  /**
+   * @return the set Parser uses while in the given nonterminal of the grammar in doc/
+   */
+  static SyncSet forNonterminal(String name) {
+    switch (name) {
+      case "PROGRAM":
+      case "PROGRAM^":
+      case "PROGRAM^^":
+        return PROGRAM;
+      case "IDENTIFIER_LIST":
+      case "IDENTIFIER_LIST`":
+      case "PARAMETER_LIST":
+      case "PARAMETER_LIST`":
+      case "EXPRESSION_LIST":
+      case "EXPRESSION_LIST`":
+        return PAREN_LIST;
+      case "DECLARATIONS":
+      case "DECLARATIONS`":
+        return DECLARATIONS;
+      case "TYPE":
+      case "STANDARD_TYPE":
+        return TYPE;
+      case "SUBPROGRAM_DECLARATIONS":
+      case "SUBPROGRAM_DECLARATIONS`":
+        return SUBPROGRAM_DECLARATIONS;
+      case "SUBPROGRAM_DECLARATION":
+      case "SUBPROGRAM_DECLARATION^":
+      case "SUBPROGRAM_DECLARATION^^":
+      case "ARGUMENTS":
+        return SUBPROGRAM_DECLARATION;
+      case "SUBPROGRAM_HEAD":
+      case "SUBPROGRAM_HEAD^":
+        return SUBPROGRAM_HEAD;
+      case "COMPOUND_STATEMENT":
+      case "COMPOUND_STATEMENT^":
+        return COMPOUND_STATEMENT;
+      case "OPTIONAL_STATEMENTS":
+      case "STATEMENT_LIST":
+      case "STATEMENT_LIST`":
+        return STATEMENT_LIST;
+      case "STATEMENT":
+      case "STATEMENT^":
+      case "PROCEDURE_STATEMENT":
+      case "PROCEDURE_STATEMENT^":
+        return STATEMENT;
+      case "VARIABLE":
+      case "VARIABLE^":
+        return VARIABLE;
+      case "EXPRESSION":
+      case "EXPRESSION^":
+        return EXPRESSION;
+      case "SIMPLE_EXPRESSION":
+      case "SIMPLE_EXPRESSION`":
+        return SIMPLE_EXPRESSION;
+      case "TERM":
+      case "TERM`":
+        return TERM;
+      case "FACTOR":
+      case "FACTOR^":
+        return FACTOR;
+      case "SIGN":
+        return SIGN;
+      default:
+        throw new IllegalArgumentException("no sync set for " + name);
+    }
+  }
+
+  public boolean contains(Token t) {
+    int type = t.type.ordinal();
+    if (MASK[type] == 1L << OFFSET[type] || (int) t.attribute == -1)
+      return (bits & MASK[type]) != 0;
+    return (bits & (1L << (OFFSET[type] + (int) t.attribute))) != 0;
+  }
+}
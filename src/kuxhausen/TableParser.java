@@ -0,0 +1,78 @@
+package kuxhausen;
+
+import java.util.Arrays;
+
+/**
+ * @author Eric Kuxhausen Parser driven by the LL(1) ParseTable instead of one method per
+ *         nonterminal. Symbols still to be matched are kept on an explicit stack, so nesting depth
+ *         costs heap rather than call stack. Errors and recovery follow Parser: a nonterminal with
+ *         no entry for the current token reports what its row expects and syncs, and a terminal
+ *         that doesn't match reports itself, drops the rest of the production it came from and
+ *         syncs on the set of the last nonterminal expanded.
+ */
+public class TableParser extends Parser {
+
+  /**
+   * when set (-Dkuxhausen.tableParser=true) Project2 parses with a TableParser
+   */
+  public static final boolean ENABLED = Boolean.getBoolean("kuxhausen.tableParser");
+
+  TableParser(Lexar lex) {
+    super(lex);
+  }
+
+  TableParser(Lexar lex, StreamingWriter out) {
+    super(lex, out);
+  }
+
+  TableParser(TokenStore lexed) {
+    super(lexed);
+  }
+
+  @Override
+  void parse() {
+    ParseTable t = ParseTable.getShared();
+    // each symbol is tagged with the expansion it came from, so an error can pop its siblings
+    int[] symbols = new int[64];
+    int[] frames = new int[64];
+    int top = 0;
+    int frame = 0;
+    symbols[top] = t.start;
+    frames[top++] = frame;
+
+    while (top > 0) {
+      int symbol = symbols[--top];
+      int owner = frames[top];
+
+      if (symbol >= 0) {
+        mSet = t.sync[symbol];
+        int production = t.table[symbol * SyncSet.SIZE + SyncSet.bit(mT)];
+        if (production < 0) {
+          wanted(t.expected[symbol]);
+          sync();
+          continue;
+        }
+        int[] rhs = t.rhs[production];
+        if (top + rhs.length > symbols.length) {
+          symbols = Arrays.copyOf(symbols, 2 * (top + rhs.length));
+          frames = Arrays.copyOf(frames, symbols.length);
+        }
+        frame++;
+        for (int i = rhs.length - 1; i >= 0; i--) {
+          symbols[top] = rhs[i];
+          frames[top++] = frame;
+        }
+      } else {
+        int terminal = -1 - symbol;
+        if (mT.typeMatch(t.termType[terminal], t.termAttr[terminal])) {
+          consumeToken();
+          continue;
+        }
+        wanted(t.termExpected[terminal]);
+        while (top > 0 && frames[top - 1] == owner)
+          top--;
+        sync();
+      }
+    }
+  }
+}
@@ -10,6 +10,11 @@ public class Token implements Cloneable {
   public String lexeme;
   public SourcePointer position;
 
+  /**
+   * for ID tokens, the identifier's id in the Lexar's SymbolTable
+   */
+  public int symbol = -1;
+
   public Token(TokType t, int attr, String lex, SourcePointer pos) {
     this(t, (Object) attr, lex, pos);
   }
@@ -26,7 +31,9 @@ public class Token implements Cloneable {
   }
 
   public Token clone() {
-    return new Token(type, attribute, lexeme, position.clone());
+    Token copy = new Token(type, attribute, lexeme, position.clone());
+    copy.symbol = symbol;
+    return copy;
   }
 
   public PasType getNumType() {
@@ -71,6 +78,18 @@ public class Token implements Cloneable {
     return AddopAttr.values()[(int) attribute];
   }
 
+  /**
+   * same as fullTypeMatch() against a pair of the given type and attribute, without building one
+   */
+  public boolean typeMatch(TokType otherType, int otherAttr) {
+    if (type != otherType)
+      return false;
+    if (type == TokType.RESWRD || type == TokType.RELOP || type == TokType.ADDOP
+        || type == TokType.MULOP)
+      return (int) attribute == -1 || otherAttr == -1 || (int) attribute == otherAttr;
+    return true;
+  }
+
   public boolean fullTypeMatch(Token other) {
     if (type == other.type) {
       // if one of these types, have to compare attributes as well
@@ -0,0 +1,162 @@
+package kuxhausen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Eric Kuxhausen Bounded queue of tokens from exactly one producing thread to exactly one
+ *         consuming thread, without locks. Each side only ever writes its own index and publishes
+ *         it with an ordered store, and keeps a cached copy of the other side's index so it only
+ *         reads the shared one when the ring looks full or empty. A side that has to wait spins
+ *         briefly, then yields, then parks for short spells, so a producer that gets a ring ahead
+ *         is held back without burning a core.
+ */
+public class TokenRing {
+
+  private static final int SPINS = 64;
+  private static final int YIELDS = 64;
+  private static final long PARK_NANOS = 50000;
+
+  private final Token[] slots;
+  private final int mask;
+
+  /**
+   * next slot to take, written only by the consumer
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * next slot to fill, written only by the producer
+   */
+  private final AtomicLong tail = new AtomicLong();
+
+  private long cachedHead; // producer's view of head
+  private long cachedTail; // consumer's view of tail
+
+  private volatile Thread parkedProducer;
+  private volatile Thread parkedConsumer;
+  private volatile Throwable failure;
+  private volatile boolean closed;
+
+  /**
+   * @param capacity rounded up to a power of two
+   */
+  public TokenRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    slots = new Token[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Adds t, waiting while the ring is full. Producer only.
+   *
+   * @return false if the consumer closed the ring, in which case t was dropped
+   */
+  public boolean put(Token t) {
+    long next = tail.get();
+    for (int waits = 0; next - cachedHead >= slots.length; waits++) {
+      cachedHead = head.get();
+      if (next - cachedHead < slots.length)
+        break;
+      if (closed)
+        return false;
+      if (pause(waits))
+        park(true);
+    }
+    if (closed)
+      return false;
+    slots[(int) next & mask] = t;
+    tail.lazySet(next + 1);
+    Thread consumer = parkedConsumer;
+    if (consumer != null)
+      LockSupport.unpark(consumer);
+    return true;
+  }
+
+  /**
+   * Takes the oldest token, waiting while the ring is empty. Consumer only. Once the producer has
+   * failed and every token it added is taken, rethrows what it failed with.
+   */
+  public Token take() {
+    long next = head.get();
+    for (int waits = 0; next >= cachedTail; waits++) {
+      cachedTail = tail.get();
+      if (next < cachedTail)
+        break;
+      Throwable cause = failure;
+      if (cause != null && next >= tail.get())
+        rethrow(cause);
+      if (pause(waits))
+        park(false);
+    }
+    int slot = (int) next & mask;
+    Token t = slots[slot];
+    slots[slot] = null;
+    head.lazySet(next + 1);
+    Thread producer = parkedProducer;
+    if (producer != null)
+      LockSupport.unpark(producer);
+    return t;
+  }
+
+  /**
+   * Ends production with an error for take() to rethrow. Producer only.
+   */
+  public void fail(Throwable cause) {
+    failure = cause;
+    Thread consumer = parkedConsumer;
+    if (consumer != null)
+      LockSupport.unpark(consumer);
+  }
+
+  /**
+   * Tells the producer no more tokens will be taken, so its next put() returns false. Consumer
+   * only.
+   */
+  public void close() {
+    closed = true;
+    Thread producer = parkedProducer;
+    if (producer != null)
+      LockSupport.unpark(producer);
+  }
+
+  /**
+   * spins, then yields
+   *
+   * @return true once it is time to park instead
+   */
+  private static boolean pause(int waits) {
+    if (waits < SPINS)
+      return false;
+    if (waits < SPINS + YIELDS) {
+      Thread.yield();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Parks for a short spell. The other side unparks after publishing, and the spell is bounded, so
+   * a wakeup that races with parking only costs one spell.
+   */
+  private void park(boolean producer) {
+    Thread self = Thread.currentThread();
+    if (producer)
+      parkedProducer = self;
+    else
+      parkedConsumer = self;
+    LockSupport.parkNanos(this, PARK_NANOS);
+    if (producer)
+      parkedProducer = null;
+    else
+      parkedConsumer = null;
+  }
+
+  private static void rethrow(Throwable cause) {
+    if (cause instanceof RuntimeException)
+      throw (RuntimeException) cause;
+    if (cause instanceof Error)
+      throw (Error) cause;
+    throw new RuntimeException(cause);
+  }
+}
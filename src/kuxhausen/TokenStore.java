@@ -0,0 +1,246 @@
+package kuxhausen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import kuxhausen.Token.TokType;
+
+/**
+ * @author Eric Kuxhausen Compact token list keeping each field in its own primitive array instead
+ *         of one Token object per token. Lexemes are either a range of the SourceBuffer or, for
+ *         fixed spellings and error messages, an index into a shared string table, so the lexer
+ *         can fill a store without allocating per token. Token objects are only built when read
+ *         back through get() or load().
+ */
+public class TokenStore {
+
+  /**
+   * attribute of a token without one
+   */
+  static final int ATTR_NONE = -1;
+
+  /**
+   * attribute of a NUM, whose attribute is its own lexeme. An ID's attribute is its lexeme as well,
+   * but its column holds the identifier's SymbolTable id instead.
+   */
+  static final int ATTR_LEXEME = -2;
+
+  private static final TokType[] TYPES = TokType.values();
+
+  private SourceBuffer source;
+  private int size;
+
+  private byte[] type = new byte[1024];
+  /**
+   * enum ordinal for RESWRD/RELOP/ADDOP/MULOP, symbol id for ID, string table index for error
+   * messages
+   */
+  private int[] attribute = new int[1024];
+  private int[] line = new int[1024];
+  private int[] column = new int[1024];
+  /**
+   * source offset of the lexeme, or its string table index when lexLength is -1
+   */
+  private int[] lexStart = new int[1024];
+  private int[] lexLength = new int[1024];
+
+  private ArrayList<String> strings = new ArrayList<String>();
+  private HashMap<String, Integer> constants = new HashMap<String, Integer>();
+
+  public TokenStore(SourceBuffer source) {
+    this.source = source;
+  }
+
+  public SourceBuffer getSourceBuffer() {
+    return source;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private int nextRow() {
+    if (size == type.length) {
+      int capacity = size * 2;
+      type = Arrays.copyOf(type, capacity);
+      attribute = Arrays.copyOf(attribute, capacity);
+      line = Arrays.copyOf(line, capacity);
+      column = Arrays.copyOf(column, capacity);
+      lexStart = Arrays.copyOf(lexStart, capacity);
+      lexLength = Arrays.copyOf(lexLength, capacity);
+    }
+    return size++;
+  }
+
+  /**
+   * index of s in the string table, adding it once
+   */
+  private int constant(String s) {
+    Integer index = constants.get(s);
+    if (index == null) {
+      index = strings.size();
+      strings.add(s);
+      constants.put(s, index);
+    }
+    return index;
+  }
+
+  /**
+   * adds a token whose lexeme is the given source range
+   */
+  public void add(TokType t, int attr, int lineNum, int charInLineNum, int start, int length) {
+    int i = nextRow();
+    type[i] = (byte) t.ordinal();
+    attribute[i] = attr;
+    line[i] = lineNum;
+    column[i] = charInLineNum;
+    lexStart[i] = start;
+    lexLength[i] = length;
+  }
+
+  /**
+   * adds a token with a fixed spelling, such as a reserved word or symbol
+   */
+  public void addFixed(TokType t, int attr, int lineNum, int charInLineNum, String lexeme) {
+    add(t, attr, lineNum, charInLineNum, constant(lexeme), -1);
+  }
+
+  /**
+   * adds a LEXERR whose lexeme is the given source range
+   */
+  public void addError(String message, int lineNum, int charInLineNum, int start, int length) {
+    add(TokType.LEXERR, constant(message), lineNum, charInLineNum, start, length);
+  }
+
+  /**
+   * adds a copy of an existing Token, used for parser errors and the $ token
+   */
+  public void add(Token t) {
+    int attr;
+    if (t.attribute == null)
+      attr = ATTR_NONE;
+    else if (t.attribute instanceof Integer)
+      attr = (Integer) t.attribute;
+    else if (t.type == TokType.ID)
+      attr = t.symbol;
+    else if (t.type == TokType.NUM)
+      attr = ATTR_LEXEME;
+    else
+      attr = constant(t.attribute.toString());
+    add(t.type, attr, t.position.lineNum, t.position.charInLineNum, constant(t.lexeme), -1);
+  }
+
+  /**
+   * adds row i of another store sharing the same SourceBuffer
+   */
+  public void copy(TokenStore from, int i) {
+    int attr = from.attribute[i];
+    TokType t = TYPES[from.type[i]];
+    if (attr >= 0 && hasMessage(t))
+      attr = constant(from.strings.get(attr));
+    int start = from.lexStart[i];
+    if (from.lexLength[i] < 0)
+      start = constant(from.strings.get(start));
+    add(t, attr, from.line[i], from.column[i], start, from.lexLength[i]);
+  }
+
+  private static boolean hasMessage(TokType t) {
+    return t == TokType.LEXERR || t == TokType.SYNTAXERR || t == TokType.SEMANTICERR;
+  }
+
+  public TokType getType(int i) {
+    return TYPES[type[i]];
+  }
+
+  public int getAttribute(int i) {
+    return attribute[i];
+  }
+
+  public int getLine(int i) {
+    return line[i];
+  }
+
+  public String getLexeme(int i) {
+    if (lexLength[i] < 0)
+      return strings.get(lexStart[i]);
+    return source.substring(lexStart[i], lexStart[i] + lexLength[i]);
+  }
+
+  private Object attributeObject(int i, String lexeme) {
+    TokType t = TYPES[type[i]];
+    int attr = attribute[i];
+    if (attr == ATTR_LEXEME || t == TokType.ID)
+      return lexeme;
+    if (attr == ATTR_NONE)
+      return null;
+    if (hasMessage(t))
+      return strings.get(attr);
+    return attr;
+  }
+
+  /**
+   * overwrites the fields of into with row i, for callers that don't hold on to tokens
+   */
+  public Token load(int i, Token into) {
+    into.type = TYPES[type[i]];
+    into.lexeme = getLexeme(i);
+    into.attribute = attributeObject(i, into.lexeme);
+    into.symbol = (into.type == TokType.ID) ? attribute[i] : -1;
+    into.position.lineNum = line[i];
+    into.position.charInLineNum = column[i];
+    return into;
+  }
+
+  /**
+   * @return a new Token holding row i
+   */
+  public Token get(int i) {
+    return load(i, new Token(TokType.$, null, null, new SourcePointer()));
+  }
+
+  /**
+   * Walks a store one token at a time. Starts before the first token and never moves past the last.
+   */
+  public class Cursor {
+    private int index = -1;
+
+    public int index() {
+      return index;
+    }
+
+    public TokType type() {
+      return TYPES[type[index]];
+    }
+
+    public int attribute() {
+      return attribute[index];
+    }
+
+    public Token load(Token into) {
+      return TokenStore.this.load(index, into);
+    }
+
+    public Token get() {
+      return TokenStore.this.get(index);
+    }
+
+    public void next() {
+      if (index < size - 1)
+        index++;
+    }
+  }
+
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * @return a cursor on row i, as if next() had already been called i + 1 times
+   */
+  public Cursor cursor(int i) {
+    Cursor c = new Cursor();
+    c.index = i;
+    return c;
+  }
+}
@@ -1,48 +1,102 @@
 package kuxhausen;
 
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import static kuxhausen.Token.*;
 
 public class Utils {
 
   public static void writeListingFile(String filename, ArrayList<Token> tokens, SourceBuffer source) {
-    PrintWriter output = null;
-    try {
-      output = new PrintWriter(filename);
-    } catch (FileNotFoundException e) {
-    }
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.WRITE);
+    ChannelWriter output = ChannelWriter.open(filename);
 
     int lineNo = -1;
     for (Token t : tokens) {
-      while (t.position.lineNum > lineNo && (lineNo + 2) <= source.getNumLines()) {
-        lineNo++;
-        output.print(String.format("%-8s", "" + (lineNo + 1)) + source.getLine(lineNo));
-      }
-      if (t.type == TokType.LEXERR)
-        output.println("LEXERR: " + t.attribute);
-      if (t.type == TokType.SYNTAXERR)
-        output.println("SYNTAXERR: " + t.attribute);
-      if (t.type == TokType.SEMANTICERR)
-        output.println("SEMANTICERR: " + t.attribute);
+      lineNo = writeListingEntry(output, t, source, lineNo);
     }
     output.close();
+    timer.stop();
   }
 
-  public static void writeTokenFile(String filename, ArrayList<Token> tokens) {
-    PrintWriter output = null;
-    try {
-      output = new PrintWriter(filename);
-    } catch (FileNotFoundException e) {
+  public static void writeListingFile(String filename, TokenStore tokens, SourceBuffer source) {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.WRITE);
+    ChannelWriter output = ChannelWriter.open(filename);
+
+    Token scratch = new Token(TokType.$, null, null, new SourcePointer());
+    int lineNo = -1;
+    for (int i = 0; i < tokens.size(); i++) {
+      lineNo = writeListingEntry(output, tokens.load(i, scratch), source, lineNo);
     }
+    output.close();
+    timer.stop();
+  }
+
+  /**
+   * lists the source lines after lineNo up to t's line, then t's error message if it has one
+   * 
+   * @return the last line listed so far
+   */
+  static int writeListingEntry(ChannelWriter output, Token t, SourceBuffer source, int lineNo) {
+    int from = lineNo;
+    while (t.position.lineNum > lineNo && (lineNo + 2) <= source.getNumLines()) {
+      lineNo++;
+      output.pad(lineNo + 1, 8);
+      source.writeLine(lineNo, output);
+    }
+    if (t.type == TokType.LEXERR || t.type == TokType.SYNTAXERR
+        || t.type == TokType.SEMANTICERR) {
+      output.print(t.type.toString());
+      output.print(": ");
+      output.print(String.valueOf(t.attribute));
+      output.println();
+    }
+    Metrics.listed(lineNo - from, t);
+    return lineNo;
+  }
+
+  public static void writeTokenFile(String filename, ArrayList<Token> tokens) {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.WRITE);
+    ChannelWriter output = ChannelWriter.open(filename);
 
-    String formatting = "%-9s%-17s%-13s%-10s";
-    output.println(String.format(formatting, "Line No.", "Lexeme", "TOKEN-TYPE", "ATTRIBUTE"));
+    writeTokenHeader(output);
     for (Token t : tokens) {
-      output.println(String.format(formatting, (t.position.lineNum + 1), t.lexeme,
-          t.type.toString(), t.getAttribute()));
+      writeTokenLine(output, t);
+    }
+    output.close();
+    timer.stop();
+  }
+
+  public static void writeTokenFile(String filename, TokenStore tokens) {
+    Metrics.Timer timer = Metrics.start(Metrics.Phase.WRITE);
+    ChannelWriter output = ChannelWriter.open(filename);
+
+    Token scratch = new Token(TokType.$, null, null, new SourcePointer());
+    writeTokenHeader(output);
+    for (int i = 0; i < tokens.size(); i++) {
+      writeTokenLine(output, tokens.load(i, scratch));
     }
     output.close();
+    timer.stop();
+  }
+
+  /**
+   * widths of the token file's left justified columns
+   */
+  private static final int LINE_WIDTH = 9, LEXEME_WIDTH = 17, TYPE_WIDTH = 13,
+      ATTRIBUTE_WIDTH = 10;
+
+  static void writeTokenHeader(ChannelWriter output) {
+    output.pad("Line No.", LINE_WIDTH);
+    output.pad("Lexeme", LEXEME_WIDTH);
+    output.pad("TOKEN-TYPE", TYPE_WIDTH);
+    output.pad("ATTRIBUTE", ATTRIBUTE_WIDTH);
+    output.println();
+  }
+
+  static void writeTokenLine(ChannelWriter output, Token t) {
+    output.pad(t.position.lineNum + 1, LINE_WIDTH);
+    output.pad(t.lexeme, LEXEME_WIDTH);
+    output.pad(t.type.toString(), TYPE_WIDTH);
+    output.pad(t.getAttribute(), ATTRIBUTE_WIDTH);
+    output.println();
   }
 }
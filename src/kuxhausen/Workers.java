@@ -0,0 +1,81 @@
+package kuxhausen;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Eric Kuxhausen Pool shared by the parsers for work split out of a single file, one
+ *         thread per processor. The parsers recurse once per nested construct, so its threads get
+ *         deep stacks as in CompileServer.
+ */
+public class Workers {
+
+  private static ExecutorService shared;
+
+  public static synchronized ExecutorService getShared() {
+    if (shared == null) {
+      shared =
+          Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+              new ThreadFactory() {
+                private AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                  Thread t = new Thread(null, r, "worker-" + count.incrementAndGet(), 1L << 28);
+                  t.setDaemon(true);
+                  return t;
+                }
+              });
+    }
+    return shared;
+  }
+
+  /**
+   * @return tasks split into at most groups runs of neighbours with about the same total size,
+   *         given each task's size. Each run is given as its first and one past its last index.
+   */
+  static ArrayList<int[]> group(long[] sizes, int groups) {
+    long total = 0;
+    for (long size : sizes)
+      total += size;
+    ArrayList<int[]> runs = new ArrayList<int[]>();
+    int start = 0;
+    long done = 0;
+    for (int g = 1; g <= groups && start < sizes.length; g++) {
+      int end = start;
+      while (end < sizes.length && (done < total * g / groups || end == start))
+        done += sizes[end++];
+      runs.add(new int[] {start, end});
+      start = end;
+    }
+    return runs;
+  }
+
+  /**
+   * waits for result, rethrowing whatever the task threw
+   */
+  static <T> T await(Future<T> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for a worker", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  static <T> Future<T> submit(Callable<T> task) {
+    return getShared().submit(task);
+  }
+}